@@ -2,18 +2,32 @@ package kz.bdl.test.controller;
 
 import kz.bdl.test.model.camera.CameraPushModels;
 import kz.bdl.test.service.CameraConfigPushService;
+import kz.bdl.test.service.CameraHealthRegistry;
+import kz.bdl.test.service.CameraPushJobService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @Controller
 @RequiredArgsConstructor
 public class CameraConfigController {
 
     private final CameraConfigPushService cameraConfigPushService;
+    private final CameraPushJobService cameraPushJobService;
+    private final CameraHealthRegistry cameraHealthRegistry;
 
     @GetMapping("/camera/config")
     public String cameraConfigPage() {
@@ -36,6 +50,11 @@ public class CameraConfigController {
         return cameraConfigPushService.pushToCameras(request);
     }
 
+    @PostMapping("/camera/config/api/push/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamToCameras(@RequestBody CameraPushModels.Request request) {
+        return ndjson(cameraConfigPushService.streamToCameras(request));
+    }
+
     @PostMapping("/camera/config/api/push/mixed-target")
     @ResponseBody
     public CameraPushModels.Response pushMixedTarget(@RequestBody CameraPushModels.MixedTargetRequest request) {
@@ -53,4 +72,82 @@ public class CameraConfigController {
     public CameraPushModels.Response pushCameraArm(@RequestBody CameraPushModels.MixedTargetRequest request) {
         return cameraConfigPushService.pushMixedTargetDetection(request);
     }
+
+    @PostMapping("/camera-arm/api/push/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamCameraArm(@RequestBody CameraPushModels.MixedTargetRequest request) {
+        return ndjson(cameraConfigPushService.streamMixedTargetDetection(request));
+    }
+
+    @PostMapping("/camera/config/api/jobs")
+    @ResponseBody
+    public ResponseEntity<CameraPushModels.JobStatus> submitJob(@RequestBody CameraPushModels.Request request) {
+        try {
+            return ResponseEntity.accepted().body(cameraPushJobService.submit(request));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @PostMapping("/camera-arm/api/jobs")
+    @ResponseBody
+    public ResponseEntity<CameraPushModels.JobStatus> submitCameraArmJob(@RequestBody CameraPushModels.MixedTargetRequest request) {
+        try {
+            return ResponseEntity.accepted().body(cameraPushJobService.submitMixedTarget(request));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/camera/push/api/jobs")
+    @ResponseBody
+    public List<CameraPushModels.JobStatus> jobs() {
+        return cameraPushJobService.list();
+    }
+
+    @GetMapping("/camera/push/api/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<CameraPushModels.JobStatus> job(
+            @PathVariable String id,
+            @RequestParam(name = "since", defaultValue = "0") int since
+    ) {
+        return ResponseEntity.ofNullable(cameraPushJobService.status(id, since));
+    }
+
+    @GetMapping("/camera/push/api/jobs/{id}/stream")
+    public ResponseEntity<ResponseBodyEmitter> streamJob(@PathVariable String id) {
+        ResponseBodyEmitter emitter = cameraPushJobService.stream(id);
+        return emitter == null ? ResponseEntity.notFound().build() : ndjson(emitter);
+    }
+
+    @PostMapping("/camera/push/api/jobs/{id}/cancel")
+    @ResponseBody
+    public ResponseEntity<CameraPushModels.JobStatus> cancelJob(@PathVariable String id) {
+        return ResponseEntity.ofNullable(cameraPushJobService.cancel(id));
+    }
+
+    @PostMapping("/camera/push/api/jobs/{id}/retry")
+    @ResponseBody
+    public ResponseEntity<CameraPushModels.JobStatus> retryJob(@PathVariable String id) {
+        try {
+            CameraPushModels.JobStatus retry = cameraPushJobService.retryFailed(id);
+            return retry == null ? ResponseEntity.notFound().build() : ResponseEntity.accepted().body(retry);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/camera/push/api/health")
+    @ResponseBody
+    public List<CameraHealthRegistry.Snapshot> cameraHealth() {
+        return cameraHealthRegistry.snapshot();
+    }
+
+    private static ResponseEntity<ResponseBodyEmitter> ndjson(ResponseBodyEmitter emitter) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .cacheControl(CacheControl.noStore())
+                .body(emitter);
+    }
 }
@@ -0,0 +1,31 @@
+package kz.bdl.test.controller;
+
+import kz.bdl.test.service.CameraFleetMonitor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequiredArgsConstructor
+public class CameraFleetController {
+
+    private final CameraFleetMonitor fleetMonitor;
+
+    @GetMapping("/camera/fleet/api/health")
+    public CameraFleetMonitor.FleetStatus health(
+            @RequestParam(name = "problemsOnly", defaultValue = "false") boolean problemsOnly
+    ) {
+        return fleetMonitor.status(problemsOnly);
+    }
+
+    @PostMapping("/camera/fleet/api/poll")
+    public ResponseEntity<Void> pollNow() {
+        return fleetMonitor.pollNow()
+                ? ResponseEntity.status(HttpStatus.ACCEPTED).build()
+                : ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+}
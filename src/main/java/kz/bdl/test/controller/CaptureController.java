@@ -1,8 +1,10 @@
 package kz.bdl.test.controller;
 
+import kz.bdl.test.service.CaptureEventCatalog;
 import kz.bdl.test.service.ServerCaptureService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -14,12 +16,15 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.Map;
 
 @Controller
 @RequiredArgsConstructor
 public class CaptureController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final ServerCaptureService serverCaptureService;
 
     @GetMapping("/capture")
@@ -61,6 +66,33 @@ public class CaptureController {
         return serverCaptureService.listEvents();
     }
 
+    @GetMapping("/capture/api/events/page")
+    @ResponseBody
+    public ResponseEntity<?> eventsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String anprStatus,
+            @RequestParam(required = false) String illegalCode,
+            @RequestParam(required = false) String remoteAddr,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to
+    ) {
+        CaptureEventCatalog.Query query = new CaptureEventCatalog.Query(
+                cursor,
+                Math.max(1, Math.min(limit, MAX_PAGE_SIZE)),
+                blankToNull(anprStatus),
+                blankToNull(illegalCode),
+                blankToNull(remoteAddr),
+                from == null ? null : from.toInstant(),
+                to == null ? null : to.toInstant()
+        );
+        try {
+            return ResponseEntity.ok(serverCaptureService.queryEvents(query));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/capture/api/illegal-types")
     @ResponseBody
     public Object illegalTypes() {
@@ -96,12 +128,21 @@ public class CaptureController {
                 .body(resource);
     }
 
+    private static String blankToNull(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim();
+    }
+
     private Map<String, Object> statusPayload() {
         return Map.of(
                 "enabled", serverCaptureService.isEnabled(),
                 "violationsOnly", serverCaptureService.isCaptureViolationsOnly(),
                 "eventCount", serverCaptureService.eventCount(),
-                "storageRoot", serverCaptureService.storageRootPath()
+                "storageRoot", serverCaptureService.storageRootPath(),
+                "writer", serverCaptureService.writerStats(),
+                "catalog", serverCaptureService.catalogLoadStatus()
         );
     }
 }
@@ -3,7 +3,12 @@ package kz.bdl.test.controller;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.Part;
 import kz.bdl.test.model.LiveEventDto;
-import kz.bdl.test.service.LiveEventHub;
+import kz.bdl.test.model.PartContent;
+import kz.bdl.test.service.AnprAnalyzer;
+import kz.bdl.test.service.CameraFleetMonitor;
+import kz.bdl.test.service.CameraIngestStats;
+import kz.bdl.test.service.IngestMetrics;
+import kz.bdl.test.service.PartBufferPool;
 import kz.bdl.test.service.ServerCaptureService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,24 +18,38 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @Slf4j
 @RequiredArgsConstructor
 public class HikvisionEventController {
 
-    private final LiveEventHub hub;
+    private final AnprAnalyzer analyzer;
     private final ServerCaptureService serverCaptureService;
+    private final PartBufferPool partBufferPool;
+    private final CameraFleetMonitor fleetMonitor;
+    private final CameraIngestStats ingestStats;
+    private final IngestMetrics metrics;
 
     @PostMapping("/hikvision/events")
     public ResponseEntity<String> receiveEvent(
             HttpServletRequest request,
             @RequestHeader HttpHeaders headers
     ) throws Exception {
+        long startedAt = System.nanoTime();
+        try {
+            return handleEvent(request, headers);
+        } finally {
+            metrics.request().record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ResponseEntity<String> handleEvent(HttpServletRequest request, HttpHeaders headers) throws Exception {
+        long readStartedAt = System.nanoTime();
+        fleetMonitor.recordEvent(request.getRemoteAddr());
 
         String contentType = request.getContentType();
         boolean isMultipart = contentType != null && contentType.toLowerCase().startsWith("multipart/");
@@ -39,63 +58,84 @@ public class HikvisionEventController {
         headers.forEach((k, v) -> headersMap.put(k, new ArrayList<>(v)));
 
         List<LiveEventDto.LivePartDto> partsOut = new ArrayList<>();
-
-        if (isMultipart) {
-            Collection<Part> parts = request.getParts();
-
-            for (Part part : parts) {
-                String partName = part.getName();
-                String fileName = part.getSubmittedFileName();
-                String partType = part.getContentType();
-
-                byte[] bytes = part.getInputStream().readAllBytes();
-
-                String b64 = Base64.getEncoder().encodeToString(bytes);
-
-                String textPreview = null;
-                if (looksLikeText(partType, fileName)) {
-                    textPreview = new String(bytes, StandardCharsets.UTF_8);
+        List<PartContent> contents = new ArrayList<>();
+        String eventId = UUID.randomUUID().toString();
+        ServerCaptureService.CaptureTarget captureTarget = serverCaptureService.beginCapture(eventId);
+        boolean handedOff = false;
+
+        try {
+            if (isMultipart) {
+                Collection<Part> parts = request.getParts();
+
+                int index = 0;
+                for (Part part : parts) {
+                    String partName = part.getName();
+                    String fileName = part.getSubmittedFileName();
+                    String partType = part.getContentType();
+
+                    PartContent content = captureTarget != null
+                            ? captureTarget.persist(index, part)
+                            : partBufferPool.read(part);
+                    contents.add(content);
+                    metrics.recordPart(content.size());
+                    index++;
+
+                    String textPreview = null;
+                    if (looksLikeText(partType, fileName)) {
+                        textPreview = content.readUtf8();
+                    }
+
+                    partsOut.add(LiveEventDto.LivePartDto.builder()
+                            .name(partName)
+                            .filename(fileName)
+                            .contentType(partType)
+                            .size(content.size())
+                            .content(content)
+                            .textPreview(textPreview)
+                            .build());
                 }
+            } else {
+                PartContent content = captureTarget != null
+                        ? captureTarget.persist(0, request.getInputStream(), contentType)
+                        : partBufferPool.read(request.getInputStream(), request.getContentLengthLong());
+                contents.add(content);
+                metrics.recordPart(content.size());
+
+                String textPreview = content.readUtf8();
 
                 partsOut.add(LiveEventDto.LivePartDto.builder()
-                        .name(partName)
-                        .filename(fileName)
-                        .contentType(partType)
-                        .size(bytes.length)
-                        .base64(b64)
+                        .name("raw-body")
+                        .filename(null)
+                        .contentType(contentType)
+                        .size(content.size())
+                        .content(content)
                         .textPreview(textPreview)
                         .build());
             }
-        } else {
-            byte[] body = request.getInputStream().readAllBytes();
-            String b64 = Base64.getEncoder().encodeToString(body);
 
-            String textPreview = new String(body, StandardCharsets.UTF_8);
-
-            partsOut.add(LiveEventDto.LivePartDto.builder()
-                    .name("raw-body")
-                    .filename(null)
+            LiveEventDto dto = LiveEventDto.builder()
+                    .id(eventId)
+                    .timestamp(OffsetDateTime.now())
+                    .method(request.getMethod())
+                    .path(request.getRequestURI())
+                    .remoteAddr(request.getRemoteAddr())
                     .contentType(contentType)
-                    .size(body.length)
-                    .base64(b64)
-                    .textPreview(textPreview)
-                    .build());
+                    .headers(headersMap)
+                    .parts(partsOut)
+                    .build();
+
+            metrics.recordEvent();
+            metrics.read().record(System.nanoTime() - readStartedAt, TimeUnit.NANOSECONDS);
+            metrics.stats().record(() -> ingestStats.record(dto));
+            analyzer.submit(dto, captureTarget);
+            handedOff = true;
+        } finally {
+            contents.forEach(PartContent::release);
+            if (!handedOff && captureTarget != null) {
+                captureTarget.abort();
+            }
         }
 
-        LiveEventDto dto = LiveEventDto.builder()
-                .id(UUID.randomUUID().toString())
-                .timestamp(OffsetDateTime.now())
-                .method(request.getMethod())
-                .path(request.getRequestURI())
-                .remoteAddr(request.getRemoteAddr())
-                .contentType(contentType)
-                .headers(headersMap)
-                .parts(partsOut)
-                .build();
-
-        hub.publish(dto);
-        serverCaptureService.captureIfEnabled(dto);
-
         log.info("Hikvision event: ct={}, parts={}, from={}",
                 contentType, partsOut.size(), request.getRemoteAddr());
 
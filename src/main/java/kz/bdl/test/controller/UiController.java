@@ -1,17 +1,36 @@
 package kz.bdl.test.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import kz.bdl.test.service.CameraIngestStats;
 import kz.bdl.test.service.LiveEventHub;
+import kz.bdl.test.service.LivePartCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
 
 @Controller
 @RequiredArgsConstructor
 public class UiController {
 
     private final LiveEventHub hub;
+    private final LivePartCache partCache;
+    private final CameraIngestStats ingestStats;
 
     @GetMapping("/")
     public String home() {
@@ -25,7 +44,90 @@ public class UiController {
 
     @GetMapping("/ui/stream")
     @ResponseBody
-    public SseEmitter stream() {
-        return hub.subscribe();
+    public SseEmitter stream(
+            @RequestParam(name = "mode", defaultValue = "full") String mode,
+            @RequestParam(name = "remoteAddr", required = false) String remoteAddr,
+            @RequestParam(name = "path", required = false) String path,
+            @RequestParam(name = "contentType", required = false) String contentType,
+            @RequestParam(name = "anprStatus", required = false) String anprStatus,
+            @RequestParam(name = "illegalCode", required = false) String illegalCode,
+            @RequestParam(name = "coalesce", required = false) Boolean coalesce,
+            @RequestParam(name = "maxRate", required = false) Double maxRate,
+            @RequestParam(name = "lastEventId", required = false) String lastEventIdParam,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+            HttpServletRequest request
+    ) {
+        LiveEventHub.StreamMode streamMode = "thin".equals(mode.trim().toLowerCase(Locale.ROOT))
+                ? LiveEventHub.StreamMode.THIN
+                : LiveEventHub.StreamMode.FULL;
+        LiveEventHub.StreamFilter filter = new LiveEventHub.StreamFilter(
+                blankToNull(remoteAddr),
+                blankToNull(path),
+                blankToNull(contentType),
+                blankToNull(anprStatus),
+                blankToNull(illegalCode)
+        );
+        String resumeFrom = lastEventId != null ? lastEventId : blankToNull(lastEventIdParam);
+        return hub.subscribe(request.getRemoteAddr(), streamMode, filter, hub.delivery(coalesce, maxRate), resumeFrom);
+    }
+
+    @GetMapping("/ui/stream/subscribers")
+    @ResponseBody
+    public LiveEventHub.HubStats subscribers() {
+        return hub.stats();
+    }
+
+    @GetMapping("/ui/ingest/cameras")
+    @ResponseBody
+    public List<CameraIngestStats.CameraStats> ingestCameras() {
+        return ingestStats.snapshot();
+    }
+
+    @GetMapping("/ui/stream/parts/{eventId}/{index}")
+    public ResponseEntity<StreamingResponseBody> part(@PathVariable String eventId, @PathVariable int index) {
+        LivePartCache.CachedPart part = partCache.open(eventId, index);
+        if (part == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // Opened now rather than in the body callback: once the file is open, the capture store
+        // can clean up underneath without cutting the download short.
+        InputStream in;
+        try {
+            in = part.content().openStream();
+        } catch (IOException e) {
+            part.content().release();
+            return ResponseEntity.notFound().build();
+        }
+
+        MediaType mediaType;
+        try {
+            mediaType = part.contentType() == null
+                    ? MediaType.APPLICATION_OCTET_STREAM
+                    : MediaType.parseMediaType(part.contentType());
+        } catch (Exception e) {
+            mediaType = MediaType.APPLICATION_OCTET_STREAM;
+        }
+
+        StreamingResponseBody body = out -> {
+            try (in) {
+                in.transferTo(out);
+            } finally {
+                part.content().release();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .contentLength(part.content().size())
+                .cacheControl(CacheControl.noStore());
+        if (part.filename() != null && !part.filename().isBlank()) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.inline().filename(part.filename()).build().toString());
+        }
+        return response.body(body);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
     }
 }
@@ -1,16 +1,19 @@
 package kz.bdl.test.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class LiveEventDto {
@@ -26,8 +29,16 @@ public class LiveEventDto {
 
     private List<LivePartDto> parts;
 
+    /**
+     * ANPR verdict: "ok", "bad" or null when the event has none. Set together with the codes and
+     * plate by the ANPR analyzer, off the request thread, before the event is published.
+     */
+    private String anprStatus;
+    private List<String> illegalCodes;
+    private String licensePlate;
+
     @Data
-    @Builder
+    @Builder(toBuilder = true)
     @NoArgsConstructor
     @AllArgsConstructor
     public static class LivePartDto {
@@ -35,7 +46,28 @@ public class LiveEventDto {
         private String filename;
         private String contentType;
         private long size;
+        @ToString.Exclude
+        @EqualsAndHashCode.Exclude
         private String base64;
         private String textPreview;
+        private String url;
+
+        @JsonIgnore
+        @ToString.Exclude
+        @EqualsAndHashCode.Exclude
+        private PartContent content;
+
+        /**
+         * Base64 is rendered lazily from {@link #content}, so ingestion never builds the string
+         * and consumers that only need bytes read them from the handle. Left out of equals,
+         * hashCode and toString, which would otherwise encode the whole part, or fail once the
+         * handle is released.
+         */
+        public String getBase64() {
+            if (base64 == null && content != null) {
+                return content.toBase64();
+            }
+            return base64;
+        }
     }
 }
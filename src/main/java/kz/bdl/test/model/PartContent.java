@@ -0,0 +1,182 @@
+package kz.bdl.test.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Handle to the bytes of one ingested part. The bytes live either in a (pooled) heap buffer
+ * or in a file on disk, and are read once from the request. Consumers share the handle and
+ * call {@link #retain()} / {@link #release()} around their use; the last release recycles
+ * the buffer or deletes an owned spill file.
+ */
+public final class PartContent {
+
+    // Smaller files are read onto the heap: mappings are only unmapped by GC, and on Windows an
+    // open mapping keeps the file from being deleted.
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private final byte[] buffer;
+    private final int length;
+    private final Path file;
+    private final long fileSize;
+    private final boolean ownsFile;
+    private final Consumer<byte[]> recycler;
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    private PartContent(byte[] buffer, int length, Path file, long fileSize, boolean ownsFile, Consumer<byte[]> recycler) {
+        this.buffer = buffer;
+        this.length = length;
+        this.file = file;
+        this.fileSize = fileSize;
+        this.ownsFile = ownsFile;
+        this.recycler = recycler;
+    }
+
+    public static PartContent ofBuffer(byte[] buffer, int length, Consumer<byte[]> recycler) {
+        return new PartContent(buffer, length, null, 0, false, recycler);
+    }
+
+    public static PartContent ofFile(Path file, long size, boolean deleteOnRelease) {
+        return new PartContent(null, 0, file, size, deleteOnRelease, null);
+    }
+
+    public long size() {
+        return file != null ? fileSize : length;
+    }
+
+    public boolean isFileBacked() {
+        return file != null;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    public InputStream openStream() throws IOException {
+        ensureLive();
+        if (file != null) {
+            return Files.newInputStream(file);
+        }
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    public byte[] readAllBytes() throws IOException {
+        ensureLive();
+        if (file != null) {
+            return Files.readAllBytes(file);
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(buffer, 0, copy, 0, length);
+        return copy;
+    }
+
+    public String readUtf8() throws IOException {
+        ensureLive();
+        if (file != null) {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        }
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read-only view of the bytes: the heap buffer itself, or the contents of the backing file.
+     * Only valid while the caller holds a reference.
+     */
+    public ByteBuffer asReadOnlyBuffer() throws IOException {
+        ensureLive();
+        if (file == null) {
+            return ByteBuffer.wrap(buffer, 0, length).asReadOnlyBuffer();
+        }
+        return readOnlyBuffer(file);
+    }
+
+    /**
+     * Read-only contents of {@code file}: read into a heap buffer up to 1 MB, memory-mapped above.
+     */
+    public static ByteBuffer readOnlyBuffer(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer heap = ByteBuffer.allocate((int) size);
+            while (heap.hasRemaining()) {
+                if (channel.read(heap) < 0) {
+                    break;
+                }
+            }
+            return heap.flip().asReadOnlyBuffer();
+        }
+    }
+
+    public String toBase64() {
+        ensureLive();
+        if (file == null) {
+            byte[] exact = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+            return Base64.getEncoder().encodeToString(exact);
+        }
+        try {
+            return Base64.getEncoder().encodeToString(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void copyTo(Path target) throws IOException {
+        ensureLive();
+        if (file != null) {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        try (var out = Files.newOutputStream(target)) {
+            out.write(buffer, 0, length);
+        }
+    }
+
+    public PartContent retain() {
+        int current;
+        do {
+            current = refCount.get();
+            if (current <= 0) {
+                throw new IllegalStateException("Part content already released");
+            }
+        } while (!refCount.compareAndSet(current, current + 1));
+        return this;
+    }
+
+    public void release() {
+        int remaining = refCount.decrementAndGet();
+        if (remaining != 0) {
+            return;
+        }
+        if (buffer != null && recycler != null) {
+            recycler.accept(buffer);
+        }
+        if (file != null && ownsFile) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Spool directory is cleaned on startup anyway.
+            }
+        }
+    }
+
+    private void ensureLive() {
+        if (refCount.get() <= 0) {
+            throw new IllegalStateException("Part content already released");
+        }
+    }
+}
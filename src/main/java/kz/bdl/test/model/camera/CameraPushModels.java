@@ -8,13 +8,18 @@ public final class CameraPushModels {
     private CameraPushModels() {
     }
 
+    /**
+     * {@code skipUnchanged} reads each camera's current configuration first and only writes to
+     * cameras where it differs from the payload.
+     */
     public record Request(
             List<String> cameraTargets,
             String username,
             String password,
             String endpointPath,
             Integer timeoutMs,
-            Payload payload
+            Payload payload,
+            Boolean skipUnchanged
     ) {
     }
 
@@ -42,7 +47,8 @@ public final class CameraPushModels {
             String username,
             String password,
             Integer timeoutMs,
-            MixedTargetPayload payload
+            MixedTargetPayload payload,
+            Boolean skipUnchanged
     ) {
     }
 
@@ -53,6 +59,11 @@ public final class CameraPushModels {
     ) {
     }
 
+    /**
+     * Outcome of one camera: {@code outcome} is {@code updated}, {@code unchanged} (the camera
+     * already had this configuration, so nothing was written), {@code failed} or {@code cancelled}
+     * (its job was cancelled before the camera was attempted).
+     */
     public record Result(
             String cameraTarget,
             String requestUrl,
@@ -61,7 +72,8 @@ public final class CameraPushModels {
             String authType,
             long durationMs,
             String responseBody,
-            String error
+            String error,
+            String outcome
     ) {
     }
 
@@ -73,4 +85,62 @@ public final class CameraPushModels {
             List<Result> results
     ) {
     }
+
+    /**
+     * Totals of a streamed push. Sent first with zero counts (and the request body), then again
+     * as the last frame once every camera has finished.
+     */
+    public record Summary(
+            OffsetDateTime executedAt,
+            String payloadXml,
+            int total,
+            int successCount,
+            int failureCount,
+            long durationMs
+    ) {
+    }
+
+    /**
+     * One NDJSON line of a streamed push: {@code start} and {@code summary} carry a
+     * {@link Summary}, {@code result} carries one camera's {@link Result} in completion order.
+     */
+    public record StreamFrame(
+            String type,
+            Result result,
+            Summary summary
+    ) {
+        public static StreamFrame start(Summary summary) {
+            return new StreamFrame("start", null, summary);
+        }
+
+        public static StreamFrame result(Result result) {
+            return new StreamFrame("result", result, null);
+        }
+
+        public static StreamFrame summary(Summary summary) {
+            return new StreamFrame("summary", null, summary);
+        }
+    }
+
+    /**
+     * State of an asynchronous push job. {@code results} holds the results from index
+     * {@code resultsFrom} on, in completion order, so pollers can ask only for what is new.
+     */
+    public record JobStatus(
+            String id,
+            String kind,
+            String state,
+            String retryOf,
+            OffsetDateTime submittedAt,
+            OffsetDateTime startedAt,
+            OffsetDateTime finishedAt,
+            String payloadXml,
+            int total,
+            int completed,
+            int successCount,
+            int failureCount,
+            int resultsFrom,
+            List<Result> results
+    ) {
+    }
 }
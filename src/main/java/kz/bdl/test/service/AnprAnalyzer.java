@@ -0,0 +1,131 @@
+package kz.bdl.test.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kz.bdl.test.model.LiveEventDto;
+import kz.bdl.test.model.PartContent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Works out each event's ANPR verdict exactly once, off the request thread, and hands the
+ * analysed event on to the stats, the live hub and the capture writer.
+ * <p>
+ * Events are spread over {@code anpr.analyzer.threads} lanes by camera address, so the events of
+ * one camera stay in order. Each lane is a bounded {@link CaptureWriterPipeline} that blocks the
+ * submitting request thread when full, which keeps a slow scan from piling up part buffers.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnprAnalyzer {
+
+    private final LiveEventHub hub;
+    private final ServerCaptureService captureService;
+    private final CameraIngestStats ingestStats;
+    private final IngestMetrics metrics;
+
+    @Value("${anpr.analyzer.threads:2}")
+    private int threads;
+
+    @Value("${anpr.analyzer.queue-capacity:256}")
+    private int queueCapacity;
+
+    private List<CaptureWriterPipeline<Task>> lanes;
+
+    @PostConstruct
+    public void init() {
+        List<CaptureWriterPipeline<Task>> created = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            created.add(new CaptureWriterPipeline<>(
+                    "anpr-analyzer-" + i,
+                    queueCapacity,
+                    1,
+                    32,
+                    0,
+                    CaptureWriterPipeline.BackpressurePolicy.BLOCK,
+                    this::analyze,
+                    this::discard,
+                    UnaryOperator.identity()
+            ));
+        }
+        lanes = List.copyOf(created);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (lanes != null) {
+            lanes.forEach(lane -> lane.shutdown(5_000));
+        }
+    }
+
+    /**
+     * Queues the event for analysis. The analyzer takes its own reference on the part contents,
+     * so the caller may release its handles as soon as this returns, and owns {@code captureTarget}
+     * from then on.
+     */
+    public void submit(LiveEventDto event, ServerCaptureService.CaptureTarget captureTarget) {
+        retainParts(event);
+        String key = event.getRemoteAddr() == null ? "" : event.getRemoteAddr();
+        lanes.get(Math.floorMod(key.hashCode(), lanes.size())).submit(new Task(event, captureTarget));
+    }
+
+    private void analyze(Task task) {
+        LiveEventDto event = task.event();
+        boolean handedOff = false;
+        try {
+            ServerCaptureService.IllegalAnalysis analysis =
+                    metrics.analyze().record(() -> ServerCaptureService.analyzeIllegalFromLiveParts(event.getParts()));
+            event.setAnprStatus(analysis.status());
+            event.setIllegalCodes(analysis.illegalCodes());
+            event.setLicensePlate(analysis.licensePlate());
+
+            ingestStats.recordVerdict(event.getRemoteAddr(), analysis.status());
+            metrics.publish().record(() -> hub.publish(event));
+            metrics.capture().record(() -> captureService.captureIfEnabled(event, analysis));
+            handedOff = true;
+        } finally {
+            releaseParts(event);
+            if (!handedOff && task.captureTarget() != null) {
+                task.captureTarget().abort();
+            }
+        }
+    }
+
+    /**
+     * Called for events still queued when the analyzer shuts down.
+     */
+    private void discard(Task task) {
+        releaseParts(task.event());
+        if (task.captureTarget() != null) {
+            task.captureTarget().abort();
+        }
+    }
+
+    private static void retainParts(LiveEventDto event) {
+        forEachContent(event, PartContent::retain);
+    }
+
+    private static void releaseParts(LiveEventDto event) {
+        forEachContent(event, PartContent::release);
+    }
+
+    private static void forEachContent(LiveEventDto event, Consumer<PartContent> action) {
+        if (event.getParts() == null) {
+            return;
+        }
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            if (part.getContent() != null) {
+                action.accept(part.getContent());
+            }
+        }
+    }
+
+    private record Task(LiveEventDto event, ServerCaptureService.CaptureTarget captureTarget) {
+    }
+}
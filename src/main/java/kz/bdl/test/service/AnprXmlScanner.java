@@ -0,0 +1,187 @@
+package kz.bdl.test.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass scanner over the raw UTF-8 bytes of an EventNotificationAlert payload.
+ * <p>
+ * It picks up {@code illegalCode}, {@code illegalName} and {@code licensePlate} elements in one
+ * walk without decoding the document to a String. Matching follows the regular expressions it
+ * replaces: tag names are ASCII case-insensitive, whitespace is allowed inside the tags, elements
+ * with attributes or nested markup are ignored, and an {@code illegalCode} value must be a single
+ * whitespace-free token.
+ */
+final class AnprXmlScanner {
+
+    private static final byte[] ILLEGAL_CODE = ascii("illegalcode");
+    private static final byte[] ILLEGAL_NAME = ascii("illegalname");
+    private static final byte[] LICENSE_PLATE = ascii("licenseplate");
+
+    private AnprXmlScanner() {
+    }
+
+    static Result scan(ByteBuffer source) {
+        List<String> codes = new ArrayList<>(2);
+        List<String> names = new ArrayList<>(2);
+        List<String> plates = new ArrayList<>(1);
+
+        ByteBuffer in = source.duplicate();
+        int limit = in.limit();
+        int i = in.position();
+        while (i < limit) {
+            if (in.get(i) != '<') {
+                i++;
+                continue;
+            }
+            int nameStart = skipWhitespace(in, i + 1, limit);
+            byte[] tag = matchTag(in, nameStart, limit);
+            if (tag == null) {
+                i++;
+                continue;
+            }
+            int close = skipWhitespace(in, nameStart + tag.length, limit);
+            if (close >= limit || in.get(close) != '>') {
+                i++;
+                continue;
+            }
+
+            int valueStart = close + 1;
+            int valueEnd = indexOf(in, (byte) '<', valueStart, limit);
+            if (valueEnd < 0) {
+                break;
+            }
+            int end = matchClosingTag(in, valueEnd, limit, tag);
+            if (end < 0) {
+                // Not a simple text element; resume at the markup that interrupted it.
+                i = valueEnd;
+                continue;
+            }
+
+            if (tag == ILLEGAL_CODE) {
+                String token = singleToken(in, valueStart, valueEnd);
+                if (token != null) {
+                    codes.add(token);
+                }
+            } else if (valueEnd > valueStart) {
+                String text = trimmed(in, valueStart, valueEnd);
+                if (tag == ILLEGAL_NAME) {
+                    names.add(text);
+                } else if (!text.isEmpty()) {
+                    plates.add(text);
+                }
+            }
+            i = end;
+        }
+        return new Result(codes, names, plates);
+    }
+
+    private static byte[] matchTag(ByteBuffer in, int from, int limit) {
+        if (regionMatches(in, from, limit, ILLEGAL_CODE)) {
+            return ILLEGAL_CODE;
+        }
+        if (regionMatches(in, from, limit, ILLEGAL_NAME)) {
+            return ILLEGAL_NAME;
+        }
+        if (regionMatches(in, from, limit, LICENSE_PLATE)) {
+            return LICENSE_PLATE;
+        }
+        return null;
+    }
+
+    /**
+     * Matches {@code <\s*\/\s*tag\s*>} at {@code from} and returns the index right after it, or -1.
+     */
+    private static int matchClosingTag(ByteBuffer in, int from, int limit, byte[] tag) {
+        int i = skipWhitespace(in, from + 1, limit);
+        if (i >= limit || in.get(i) != '/') {
+            return -1;
+        }
+        i = skipWhitespace(in, i + 1, limit);
+        if (!regionMatches(in, i, limit, tag)) {
+            return -1;
+        }
+        i = skipWhitespace(in, i + tag.length, limit);
+        if (i >= limit || in.get(i) != '>') {
+            return -1;
+        }
+        return i + 1;
+    }
+
+    private static boolean regionMatches(ByteBuffer in, int from, int limit, byte[] lowerAscii) {
+        if (from + lowerAscii.length > limit) {
+            return false;
+        }
+        for (int k = 0; k < lowerAscii.length; k++) {
+            byte b = in.get(from + k);
+            if (b >= 'A' && b <= 'Z') {
+                b = (byte) (b + ('a' - 'A'));
+            }
+            if (b != lowerAscii[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String singleToken(ByteBuffer in, int from, int to) {
+        int start = skipWhitespace(in, from, to);
+        int end = start;
+        while (end < to && !isWhitespace(in.get(end))) {
+            end++;
+        }
+        if (end == start || skipWhitespace(in, end, to) != to) {
+            return null;
+        }
+        return decode(in, start, end);
+    }
+
+    private static String trimmed(ByteBuffer in, int from, int to) {
+        int start = skipWhitespace(in, from, to);
+        int end = to;
+        while (end > start && isWhitespace(in.get(end - 1))) {
+            end--;
+        }
+        return decode(in, start, end);
+    }
+
+    private static int skipWhitespace(ByteBuffer in, int from, int limit) {
+        int i = from;
+        while (i < limit && isWhitespace(in.get(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int indexOf(ByteBuffer in, byte value, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (in.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Same set as the regex \s: space, \t, \n, \u000B, \f, \r.
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private static String decode(ByteBuffer in, int from, int to) {
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + from, to - from, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[to - from];
+        in.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    record Result(List<String> illegalCodes, List<String> illegalNames, List<String> licensePlates) {
+    }
+}
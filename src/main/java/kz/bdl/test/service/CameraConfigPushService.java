@@ -1,24 +1,55 @@
 package kz.bdl.test.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import kz.bdl.test.model.camera.CameraPushModels;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @Service
+@RequiredArgsConstructor
 public class CameraConfigPushService {
 
     private static final int DEFAULT_TIMEOUT_MS = 10_000;
@@ -26,138 +57,439 @@ public class CameraConfigPushService {
     private static final String HTTP_HOST_NOTIFICATION_PATH = "/ISAPI/Event/notification/httpHosts/1";
     private static final String MIXED_TARGET_PATH_BASE = "/ISAPI/Intelligent/channels/1/mixedTargetDetection";
 
+    static final String OUTCOME_UPDATED = "updated";
+    static final String OUTCOME_UNCHANGED = "unchanged";
+    static final String OUTCOME_FAILED = "failed";
+    static final String OUTCOME_CANCELLED = "cancelled";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final HexFormat HEX = HexFormat.of();
+
+    static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final CameraHealthRegistry health;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Semaphore> hostSemaphores = new ConcurrentHashMap<>();
+    // Digest state per camera and user, so pushes can authenticate without a challenge round trip.
+    private final Map<String, DigestSession> digestSessions = new ConcurrentHashMap<>();
+    // Meters by tag values, registered on first use so each call only records.
+    private final Map<List<String>, Counter> resultCounters = new ConcurrentHashMap<>();
+    private final Map<List<String>, Timer> exchangeTimers = new ConcurrentHashMap<>();
+    private Semaphore globalPermits;
+
+    @Value("${camera.push.max-concurrency:32}")
+    private int maxConcurrency;
+
+    @Value("${camera.push.per-host-concurrency:2}")
+    private int perHostConcurrency;
+
+    @Value("${camera.push.deadline:5m}")
+    private Duration pushDeadline;
+
+    @PostConstruct
+    public void init() {
+        globalPermits = new Semaphore(Math.max(1, maxConcurrency));
+    }
+
     public CameraPushModels.Response pushToCameras(CameraPushModels.Request request) {
+        return collect(prepare(request));
+    }
+
+    public CameraPushModels.Response pushMixedTargetDetection(CameraPushModels.MixedTargetRequest request) {
+        return collect(prepare(request));
+    }
+
+    /**
+     * Same push as {@link #pushToCameras}, but answered as NDJSON: a {@code start} frame, one
+     * {@code result} frame per camera as soon as it finishes, then a {@code summary} frame.
+     * The request is validated before the emitter is returned.
+     */
+    public ResponseBodyEmitter streamToCameras(CameraPushModels.Request request) {
+        return stream(prepare(request));
+    }
+
+    public ResponseBodyEmitter streamMixedTargetDetection(CameraPushModels.MixedTargetRequest request) {
+        return stream(prepare(request));
+    }
+
+    PreparedPush prepare(CameraPushModels.Request request) {
         List<String> targets = normalizeTargets(request.cameraTargets());
         String endpointPath = normalizeEndpointPath(request.endpointPath());
         int timeoutMs = normalizeTimeout(request.timeoutMs());
         CameraPushModels.Payload payload = normalizePayload(request.payload());
         String payloadXml = buildPayloadXml(payload);
 
-        List<CameraPushModels.Result> results = new ArrayList<>();
-        int successCount = 0;
-        for (String target : targets) {
-            long startedAt = System.currentTimeMillis();
-            try {
-                URI uri = buildTargetUri(target, endpointPath);
-                RequestExecution execution = executePut(
-                        uri,
-                        payloadXml,
-                        "application/xml; charset=UTF-8",
-                        blankToNull(request.username()),
-                        blankToNull(request.password()),
-                        timeoutMs
-                );
-                boolean success = execution.statusCode() != null
-                        && execution.statusCode() >= 200
-                        && execution.statusCode() < 300;
-                if (success) {
-                    successCount++;
-                }
+        return new PreparedPush(targets, new PushSpec(
+                endpointPath,
+                payloadXml,
+                "application/xml; charset=UTF-8",
+                blankToNull(request.username()),
+                blankToNull(request.password()),
+                timeoutMs,
+                Boolean.TRUE.equals(request.skipUnchanged())
+        ));
+    }
+
+    PreparedPush prepare(CameraPushModels.MixedTargetRequest request) {
+        List<String> targets = normalizeTargets(request.cameraTargets());
+        int timeoutMs = normalizeTimeout(request.timeoutMs());
+        CameraPushModels.MixedTargetPayload payload = normalizeMixedTargetPayload(request.payload());
+        String endpointPath = MIXED_TARGET_PATH_BASE + "?format=json";
+        String requestBody = buildMixedTargetJson(payload);
+
+        return new PreparedPush(targets, new PushSpec(
+                endpointPath,
+                requestBody,
+                "application/json; charset=UTF-8",
+                blankToNull(request.username()),
+                blankToNull(request.password()),
+                timeoutMs,
+                Boolean.TRUE.equals(request.skipUnchanged())
+        ));
+    }
+
+    private CameraPushModels.Response collect(PreparedPush push) {
+        CameraPushModels.Result[] ordered = new CameraPushModels.Result[push.targets().size()];
+        pushAll(push.targets(), push.spec(), (index, result) -> ordered[index] = result);
+        return toResponse(push.spec().body(), Arrays.asList(ordered));
+    }
 
-                results.add(new CameraPushModels.Result(
-                        target,
-                        uri.toString(),
-                        success,
-                        execution.statusCode(),
-                        execution.authType(),
-                        System.currentTimeMillis() - startedAt,
-                        limitText(execution.responseBody(), MAX_RESPONSE_CHARS),
-                        execution.error()
-                ));
+    private ResponseBodyEmitter stream(PreparedPush push) {
+        // The batch deadline bounds the push itself; leave room for the last frames.
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(pushDeadline.plusSeconds(30).toMillis());
+        Thread.ofVirtual().name("camera-push-stream").start(() -> {
+            try {
+                streamTo(push, frame -> {
+                    try {
+                        emitter.send(ndjsonLine(frame), NDJSON);
+                    } catch (IOException e) {
+                        // Client went away: abort the push so the remaining cameras are cancelled.
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                emitter.complete();
             } catch (Exception e) {
-                results.add(new CameraPushModels.Result(
-                        target,
-                        null,
-                        false,
-                        null,
-                        "none",
-                        System.currentTimeMillis() - startedAt,
-                        "",
-                        safeMessage(e)
-                ));
+                emitter.completeWithError(e);
             }
-        }
+        });
+        return emitter;
+    }
+
+    byte[] ndjsonLine(Object frame) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(frame);
+        byte[] line = Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    /**
+     * Runs the push and hands every frame to {@code frames} on the calling thread. Only the
+     * running totals are kept, never the list of results.
+     */
+    private CameraPushModels.Summary streamTo(PreparedPush push, Consumer<CameraPushModels.StreamFrame> frames) {
+        OffsetDateTime executedAt = OffsetDateTime.now();
+        long startedAt = System.currentTimeMillis();
+        int total = push.targets().size();
+        frames.accept(CameraPushModels.StreamFrame.start(
+                new CameraPushModels.Summary(executedAt, push.spec().body(), total, 0, 0, 0)));
+
+        int[] successCount = new int[1];
+        pushAll(push.targets(), push.spec(), (index, result) -> {
+            if (result.success()) {
+                successCount[0]++;
+            }
+            frames.accept(CameraPushModels.StreamFrame.result(result));
+        });
 
+        CameraPushModels.Summary summary = new CameraPushModels.Summary(
+                executedAt,
+                null,
+                total,
+                successCount[0],
+                total - successCount[0],
+                System.currentTimeMillis() - startedAt
+        );
+        frames.accept(CameraPushModels.StreamFrame.summary(summary));
+        return summary;
+    }
+
+    private static CameraPushModels.Response toResponse(String requestBody, List<CameraPushModels.Result> results) {
+        int successCount = 0;
+        for (CameraPushModels.Result result : results) {
+            if (result.success()) {
+                successCount++;
+            }
+        }
         return new CameraPushModels.Response(
                 OffsetDateTime.now(),
-                payloadXml,
+                requestBody,
                 successCount,
                 Math.max(results.size() - successCount, 0),
                 results
         );
     }
 
-    public CameraPushModels.Response pushMixedTargetDetection(CameraPushModels.MixedTargetRequest request) {
-        List<String> targets = normalizeTargets(request.cameraTargets());
-        int timeoutMs = normalizeTimeout(request.timeoutMs());
-        CameraPushModels.MixedTargetPayload payload = normalizeMixedTargetPayload(request.payload());
-        String endpointPath = MIXED_TARGET_PATH_BASE + "?format=json";
-        String requestBody = buildMixedTargetJson(payload);
-        String contentType = "application/json; charset=UTF-8";
+    /**
+     * Pushes to all targets concurrently on virtual threads. Concurrency is capped globally and
+     * per camera host (shared by all pushes running at the same time), and the whole batch is
+     * bounded by {@code camera.push.deadline}.
+     * <p>
+     * Results are handed to {@code sink} on the calling thread in completion order, together with
+     * the index of their target; cameras still running at the deadline are cancelled and reported
+     * as failed. An exception thrown by the sink aborts the batch and cancels what is left.
+     */
+    void pushAll(List<String> targets, PushSpec spec, ResultSink sink) {
+        long deadline = System.nanoTime() + pushDeadline.toNanos();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CompletionService<CameraPushModels.Result> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<CameraPushModels.Result>, Integer> indexOf = new HashMap<>();
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                String target = targets.get(i);
+                indexOf.put(completion.submit(() -> pushOne(target, spec, deadline)), i);
+            }
 
-        List<CameraPushModels.Result> results = new ArrayList<>();
-        int successCount = 0;
-        for (String target : targets) {
-            long startedAt = System.currentTimeMillis();
-            try {
-                URI uri = buildTargetUri(target, endpointPath);
-                RequestExecution execution = executePut(
-                        uri,
-                        requestBody,
-                        contentType,
-                        blankToNull(request.username()),
-                        blankToNull(request.password()),
-                        timeoutMs
-                );
-                boolean success = execution.statusCode() != null
-                        && execution.statusCode() >= 200
-                        && execution.statusCode() < 300;
-                if (success) {
-                    successCount++;
+            String abandonedReason = "Push deadline exceeded";
+            while (!indexOf.isEmpty()) {
+                Future<CameraPushModels.Result> next;
+                try {
+                    next = completion.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    abandonedReason = "Interrupted";
+                    break;
                 }
+                if (next == null) {
+                    break;
+                }
+                int index = indexOf.remove(next);
+                CameraPushModels.Result result;
+                try {
+                    result = next.get();
+                } catch (ExecutionException e) {
+                    result = failedResult(targets.get(index), null, 0, safeMessage(e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    result = failedResult(targets.get(index), null, 0, "Interrupted");
+                }
+                countResult(result);
+                sink.accept(index, result);
+            }
 
-                results.add(new CameraPushModels.Result(
-                        target,
-                        uri.toString(),
-                        success,
-                        execution.statusCode(),
-                        execution.authType(),
-                        System.currentTimeMillis() - startedAt,
-                        limitText(execution.responseBody(), MAX_RESPONSE_CHARS),
-                        execution.error()
-                ));
-            } catch (Exception e) {
-                results.add(new CameraPushModels.Result(
-                        target,
+            for (Map.Entry<Future<CameraPushModels.Result>, Integer> left : indexOf.entrySet()) {
+                left.getKey().cancel(true);
+                CameraPushModels.Result abandoned = failedResult(
+                        targets.get(left.getValue()), null, pushDeadline.toMillis(), abandonedReason);
+                countResult(abandoned);
+                sink.accept(left.getValue(), abandoned);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void countResult(CameraPushModels.Result result) {
+        List<String> tags = List.of(
+                result.outcome() == null ? "unknown" : result.outcome(),
+                result.authType() == null ? "none" : result.authType()
+        );
+        resultCounters.computeIfAbsent(tags, t -> Counter.builder("camera.push.results")
+                        .description("Per-camera push results")
+                        .tag("outcome", t.get(0))
+                        .tag("auth", t.get(1))
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private CameraPushModels.Result pushOne(String target, PushSpec spec, long deadline) {
+        long startedAt = System.currentTimeMillis();
+        URI uri;
+        try {
+            uri = buildTargetUri(target, spec.endpointPath());
+        } catch (Exception e) {
+            return failedResult(target, null, System.currentTimeMillis() - startedAt, safeMessage(e));
+        }
+
+        // Known-dead cameras fail fast instead of taking a slot and waiting for a timeout.
+        String healthKey = CameraHealthRegistry.key(uri);
+        String refused = health.admit(healthKey);
+        if (refused != null) {
+            return failedResult(target, uri.toString(), System.currentTimeMillis() - startedAt, refused);
+        }
+
+        Semaphore hostPermits = hostSemaphores.computeIfAbsent(
+                uri.getHost().toLowerCase(Locale.ROOT),
+                host -> new Semaphore(Math.max(1, perHostConcurrency))
+        );
+        boolean hostAcquired = false;
+        boolean globalAcquired = false;
+        try {
+            // Host first: a task queued behind a busy camera must not sit on a global slot that
+            // another host could use.
+            hostAcquired = hostPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            globalAcquired = hostAcquired
+                    && globalPermits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!globalAcquired) {
+                return failedResult(target, uri.toString(), System.currentTimeMillis() - startedAt,
+                        "Push deadline exceeded while waiting for a free slot");
+            }
+
+            if (spec.skipUnchanged()) {
+                RequestExecution current = execute(
+                        "GET",
+                        uri,
                         null,
-                        false,
                         null,
-                        "none",
-                        System.currentTimeMillis() - startedAt,
-                        "",
-                        safeMessage(e)
-                ));
+                        spec.username(),
+                        spec.password(),
+                        callTimeouts(healthKey, "GET", uri, spec, deadline)
+                );
+                // Any problem reading the current config just falls through to the PUT.
+                if (current.statusCode() != null
+                        && current.statusCode() == 200
+                        && IsapiConfigComparator.covers(spec.contentType(), current.responseBody(), spec.body())) {
+                    return new CameraPushModels.Result(
+                            target,
+                            uri.toString(),
+                            true,
+                            current.statusCode(),
+                            current.authType(),
+                            System.currentTimeMillis() - startedAt,
+                            "",
+                            null,
+                            OUTCOME_UNCHANGED
+                    );
+                }
+            }
+
+            RequestExecution execution = execute(
+                    "PUT",
+                    uri,
+                    spec.body(),
+                    spec.contentType(),
+                    spec.username(),
+                    spec.password(),
+                    callTimeouts(healthKey, "PUT", uri, spec, deadline)
+            );
+            boolean success = execution.statusCode() != null
+                    && execution.statusCode() >= 200
+                    && execution.statusCode() < 300;
+            return new CameraPushModels.Result(
+                    target,
+                    uri.toString(),
+                    success,
+                    execution.statusCode(),
+                    execution.authType(),
+                    System.currentTimeMillis() - startedAt,
+                    limitText(execution.responseBody(), MAX_RESPONSE_CHARS),
+                    execution.error(),
+                    success ? OUTCOME_UPDATED : OUTCOME_FAILED
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failedResult(target, uri.toString(), System.currentTimeMillis() - startedAt, "Interrupted");
+        } catch (Exception e) {
+            return failedResult(target, uri.toString(), System.currentTimeMillis() - startedAt, safeMessage(e));
+        } finally {
+            if (globalAcquired) {
+                globalPermits.release();
+            }
+            if (hostAcquired) {
+                hostPermits.release();
             }
         }
+    }
 
-        return new CameraPushModels.Response(
-                OffsetDateTime.now(),
-                requestBody,
-                successCount,
-                Math.max(results.size() - successCount, 0),
-                results
+    /**
+     * One authenticated GET for the fleet poller. Uses the same digest sessions and keep-alive
+     * connections as pushes and feeds the camera's health, but bypasses the circuit breaker so
+     * a camera that comes back is noticed on the next poll.
+     */
+    ProbeResult probe(String target, String path, String username, String password, int timeoutMs) {
+        long startedAt = System.nanoTime();
+        try {
+            URI uri = buildTargetUri(target, path);
+            RequestExecution execution = execute("GET", uri, null, null, username, password,
+                    new CallTimeouts(timeoutMs, timeoutMs));
+            return new ProbeResult(
+                    execution.statusCode(),
+                    execution.authType(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                    execution.error()
+            );
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ProbeResult(null, "none", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), "Interrupted");
+        } catch (Exception e) {
+            return new ProbeResult(null, "none", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), safeMessage(e));
+        }
+    }
+
+    // Reads adapt to the camera's latency for the same request. A write only adapts its connect
+    // timeout: applying a config can take the camera much longer than any read. Neither goes
+    // past the batch deadline.
+    private CallTimeouts callTimeouts(String healthKey, String method, URI uri, PushSpec spec, long deadline) {
+        long remainingMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        int readMs = "GET".equals(method)
+                ? health.timeoutFor(healthKey, latencyKind(method, uri), spec.timeoutMs())
+                : spec.timeoutMs();
+        int connectMs = Math.min(readMs, health.connectTimeoutFor(healthKey, spec.timeoutMs()));
+        return new CallTimeouts((int) Math.min(connectMs, remainingMs), (int) Math.min(readMs, remainingMs));
+    }
+
+    private static String latencyKind(String method, URI uri) {
+        return method + " " + uri.getPath();
+    }
+
+    private static CameraPushModels.Result failedResult(String target, String requestUrl, long durationMs, String error) {
+        return new CameraPushModels.Result(
+                target,
+                requestUrl,
+                false,
+                null,
+                "none",
+                durationMs,
+                "",
+                error,
+                OUTCOME_FAILED
         );
     }
 
-    private RequestExecution executePut(
+    /**
+     * Request with digest auth. When a session for this camera and user is cached, the request goes
+     * out with a preemptive Authorization header (next nc for the cached nonce), so a push costs
+     * one round trip. The unauthenticated challenge round trip only happens for the first push,
+     * or when the camera rejects the cached nonce (stale or expired), in which case the session
+     * is refreshed from the new challenge and the request retried once.
+     */
+    private RequestExecution execute(
+            String method,
             URI uri,
             String body,
             String contentType,
             String username,
             String password,
-            int timeoutMs
+            CallTimeouts timeouts
     ) throws Exception {
-        RawResponse first = rawPut(uri, body, contentType, null, timeoutMs);
+        String sessionKey = username == null ? null : digestSessionKey(uri, username);
+        DigestSession cached = sessionKey == null ? null : digestSessions.get(sessionKey);
+        if (cached != null && password != null) {
+            String authorization = cached.authorization(method, digestUriPath(uri), username, password);
+            RawResponse preemptive = rawRequest(method, uri, body, contentType, authorization, timeouts);
+            String challenge = extractDigestChallenge(preemptive.headers());
+            if (preemptive.statusCode() != 401 || challenge == null) {
+                return new RequestExecution(preemptive.statusCode(), preemptive.body(), null, "digest");
+            }
+            return retryWithChallenge(method, uri, body, contentType, username, password, timeouts, sessionKey, challenge);
+        }
+
+        RawResponse first = rawRequest(method, uri, body, contentType, null, timeouts);
         String digestChallenge = extractDigestChallenge(first.headers());
         if (first.statusCode() != 401 || digestChallenge == null) {
             return new RequestExecution(first.statusCode(), first.body(), null, "none");
@@ -172,40 +504,102 @@ public class CameraConfigPushService {
             );
         }
 
-        String authorization = buildDigestAuthorization(
-                digestChallenge,
-                "PUT",
-                digestUriPath(uri),
-                username,
-                password
-        );
+        return retryWithChallenge(method, uri, body, contentType, username, password, timeouts, sessionKey, digestChallenge);
+    }
 
-        RawResponse second = rawPut(uri, body, contentType, authorization, timeoutMs);
+    private RequestExecution retryWithChallenge(
+            String method,
+            URI uri,
+            String body,
+            String contentType,
+            String username,
+            String password,
+            CallTimeouts timeouts,
+            String sessionKey,
+            String challenge
+    ) throws Exception {
+        DigestSession session = DigestSession.fromChallenge(challenge);
+        String authorization = session.authorization(method, digestUriPath(uri), username, password);
+        RawResponse second = rawRequest(method, uri, body, contentType, authorization, timeouts);
+        if (second.statusCode() == 401) {
+            // Wrong credentials rather than a stale nonce: do not keep sending them preemptively.
+            digestSessions.remove(sessionKey);
+        } else {
+            digestSessions.put(sessionKey, session);
+        }
         return new RequestExecution(second.statusCode(), second.body(), null, "digest");
     }
 
-    private RawResponse rawPut(
+    private static String digestSessionKey(URI uri, String username) {
+        return uri.getScheme() + "://" + uri.getHost().toLowerCase(Locale.ROOT) + ":" + uri.getPort() + "|" + username;
+    }
+
+    /**
+     * One HTTP exchange. {@code body} may be null for requests without a body, such as GET.
+     */
+    private RawResponse rawRequest(
+            String method,
             URI uri,
             String body,
             String contentType,
             String authorization,
-            int timeoutMs
+            CallTimeouts timeouts
     ) throws Exception {
+        String healthKey = CameraHealthRegistry.key(uri);
+        long startedAt = System.nanoTime();
+        String outcome = "io-error";
+        try {
+            RawResponse response = exchange(method, uri, body, contentType, authorization, timeouts);
+            health.recordSuccess(healthKey, latencyKind(method, uri), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            outcome = (response.statusCode() / 100) + "xx";
+            return response;
+        } catch (IOException e) {
+            // A cancelled push is not the camera's fault.
+            if (!Thread.currentThread().isInterrupted()) {
+                health.recordFailure(healthKey, safeMessage(e));
+            }
+            throw e;
+        } finally {
+            exchangeTimer(method, outcome, authorization == null ? "none" : "digest")
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer exchangeTimer(String method, String outcome, String auth) {
+        return exchangeTimers.computeIfAbsent(List.of(method, outcome, auth), t -> Timer.builder("camera.push.exchange")
+                .description("Round trip of one ISAPI request")
+                .tag("method", t.get(0))
+                .tag("outcome", t.get(1))
+                .tag("auth", t.get(2))
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static RawResponse exchange(
+            String method,
+            URI uri,
+            String body,
+            String contentType,
+            String authorization,
+            CallTimeouts timeouts
+    ) throws IOException {
         HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
-        connection.setRequestMethod("PUT");
-        connection.setConnectTimeout(timeoutMs);
-        connection.setReadTimeout(timeoutMs);
-        connection.setDoOutput(true);
-        connection.setRequestProperty("Content-Type", contentType);
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeouts.connectMs());
+        connection.setReadTimeout(timeouts.readMs());
         connection.setRequestProperty("Accept", "*/*");
         if (authorization != null) {
             connection.setRequestProperty("Authorization", authorization);
         }
 
-        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
-        connection.setFixedLengthStreamingMode(bodyBytes.length);
-        try (OutputStream os = connection.getOutputStream()) {
-            os.write(bodyBytes);
+        if (body != null) {
+            byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setFixedLengthStreamingMode(bodyBytes.length);
+            try (OutputStream os = connection.getOutputStream()) {
+                os.write(bodyBytes);
+            }
         }
 
         int statusCode = connection.getResponseCode();
@@ -219,8 +613,9 @@ public class CameraConfigPushService {
             }
         }
 
+        // No disconnect(): the body has been read to the end, so the socket goes back to the
+        // keep-alive cache and the next push to this camera skips the TCP handshake.
         Map<String, List<String>> headers = connection.getHeaderFields();
-        connection.disconnect();
         return new RawResponse(statusCode, responseBody, headers == null ? Map.of() : headers);
     }
 
@@ -239,57 +634,6 @@ public class CameraConfigPushService {
         return null;
     }
 
-    private static String buildDigestAuthorization(
-            String challenge,
-            String method,
-            String uriPath,
-            String username,
-            String password
-    ) throws Exception {
-        Map<String, String> attrs = parseDigestAttributes(challenge);
-        String realm = attrs.get("realm");
-        String nonce = attrs.get("nonce");
-        if (realm == null || nonce == null) {
-            throw new IllegalStateException("Invalid digest challenge: missing realm or nonce");
-        }
-
-        String algorithm = attrs.getOrDefault("algorithm", "MD5");
-        String qop = chooseQop(attrs.get("qop"));
-        String opaque = attrs.get("opaque");
-        String cnonce = randomCnonce();
-        String nc = "00000001";
-
-        String ha1 = digestHex(username + ":" + realm + ":" + password, algorithm);
-        if (algorithm.toLowerCase(Locale.ROOT).endsWith("-sess")) {
-            ha1 = digestHex(ha1 + ":" + nonce + ":" + cnonce, algorithm);
-        }
-        String ha2 = digestHex(method + ":" + uriPath, algorithm);
-
-        String response;
-        if (qop != null) {
-            response = digestHex(ha1 + ":" + nonce + ":" + nc + ":" + cnonce + ":" + qop + ":" + ha2, algorithm);
-        } else {
-            response = digestHex(ha1 + ":" + nonce + ":" + ha2, algorithm);
-        }
-
-        StringBuilder auth = new StringBuilder("Digest ");
-        appendAuthQuoted(auth, "username", username);
-        appendAuthQuoted(auth, "realm", realm);
-        appendAuthQuoted(auth, "nonce", nonce);
-        appendAuthQuoted(auth, "uri", uriPath);
-        appendAuthQuoted(auth, "response", response);
-        auth.append(", algorithm=").append(algorithm);
-        if (opaque != null && !opaque.isBlank()) {
-            appendAuthQuoted(auth, "opaque", opaque);
-        }
-        if (qop != null) {
-            auth.append(", qop=").append(qop);
-            auth.append(", nc=").append(nc);
-            appendAuthQuoted(auth, "cnonce", cnonce);
-        }
-        return auth.toString();
-    }
-
     private static Map<String, String> parseDigestAttributes(String challenge) {
         String body = challenge.trim();
         if (body.regionMatches(true, 0, "Digest ", 0, 7)) {
@@ -356,12 +700,7 @@ public class CameraConfigPushService {
         String algoUpper = algorithmToken == null ? "" : algorithmToken.toUpperCase(Locale.ROOT);
         String jcaAlgo = algoUpper.contains("SHA-256") ? "SHA-256" : "MD5";
         MessageDigest md = MessageDigest.getInstance(jcaAlgo);
-        byte[] bytes = md.digest(value.getBytes(StandardCharsets.ISO_8859_1));
-        StringBuilder sb = new StringBuilder(bytes.length * 2);
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xff));
-        }
-        return sb.toString();
+        return HEX.formatHex(md.digest(value.getBytes(StandardCharsets.ISO_8859_1)));
     }
 
     private static void appendAuthQuoted(StringBuilder sb, String key, String value) {
@@ -388,10 +727,17 @@ public class CameraConfigPushService {
 
     private static String randomCnonce() {
         byte[] bytes = new byte[12];
-        new SecureRandom().nextBytes(bytes);
+        RANDOM.nextBytes(bytes);
         return Base64.getEncoder().encodeToString(bytes);
     }
 
+    /**
+     * Lower-cased host of a camera target, as it appears in the remote address of its events.
+     */
+    static String targetHost(String target) {
+        return buildTargetUri(target, "/").getHost().toLowerCase(Locale.ROOT);
+    }
+
     private static URI buildTargetUri(String target, String endpointPath) {
         String normalized = target.trim();
         if (normalized.startsWith("http://") || normalized.startsWith("https://")) {
@@ -408,7 +754,7 @@ public class CameraConfigPushService {
         return URI.create("http://" + normalized + endpointPath);
     }
 
-    private static List<String> normalizeTargets(List<String> rawTargets) {
+    static List<String> normalizeTargets(List<String> rawTargets) {
         if (rawTargets == null) {
             return List.of();
         }
@@ -617,6 +963,103 @@ public class CameraConfigPushService {
         return value.substring(0, maxChars) + "\n...truncated...";
     }
 
+    /**
+     * Server nonce and parameters from the last digest challenge of one camera. Every
+     * Authorization built from it uses the next nonce count, as RFC 7616 requires for reuse.
+     */
+    record DigestSession(
+            String realm,
+            String nonce,
+            String opaque,
+            String algorithm,
+            String qop,
+            AtomicInteger nonceCount
+    ) {
+        static DigestSession fromChallenge(String challenge) {
+            Map<String, String> attrs = parseDigestAttributes(challenge);
+            String realm = attrs.get("realm");
+            String nonce = attrs.get("nonce");
+            if (realm == null || nonce == null) {
+                throw new IllegalStateException("Invalid digest challenge: missing realm or nonce");
+            }
+            return new DigestSession(
+                    realm,
+                    nonce,
+                    attrs.get("opaque"),
+                    attrs.getOrDefault("algorithm", "MD5"),
+                    chooseQop(attrs.get("qop")),
+                    new AtomicInteger()
+            );
+        }
+
+        String authorization(String method, String uriPath, String username, String password) throws Exception {
+            return authorization(method, uriPath, username, password, randomCnonce());
+        }
+
+        String authorization(String method, String uriPath, String username, String password, String cnonce) throws Exception {
+            String nc = HEX.toHexDigits(nonceCount.incrementAndGet());
+
+            String ha1 = digestHex(username + ":" + realm + ":" + password, algorithm);
+            if (algorithm.toLowerCase(Locale.ROOT).endsWith("-sess")) {
+                ha1 = digestHex(ha1 + ":" + nonce + ":" + cnonce, algorithm);
+            }
+            String ha2 = digestHex(method + ":" + uriPath, algorithm);
+
+            String response;
+            if (qop != null) {
+                response = digestHex(ha1 + ":" + nonce + ":" + nc + ":" + cnonce + ":" + qop + ":" + ha2, algorithm);
+            } else {
+                response = digestHex(ha1 + ":" + nonce + ":" + ha2, algorithm);
+            }
+
+            StringBuilder auth = new StringBuilder("Digest ");
+            appendAuthQuoted(auth, "username", username);
+            appendAuthQuoted(auth, "realm", realm);
+            appendAuthQuoted(auth, "nonce", nonce);
+            appendAuthQuoted(auth, "uri", uriPath);
+            appendAuthQuoted(auth, "response", response);
+            auth.append(", algorithm=").append(algorithm);
+            if (opaque != null && !opaque.isBlank()) {
+                appendAuthQuoted(auth, "opaque", opaque);
+            }
+            if (qop != null) {
+                auth.append(", qop=").append(qop);
+                auth.append(", nc=").append(nc);
+                appendAuthQuoted(auth, "cnonce", cnonce);
+            }
+            return auth.toString();
+        }
+    }
+
+    @FunctionalInterface
+    interface ResultSink {
+        void accept(int index, CameraPushModels.Result result);
+    }
+
+    /**
+     * A validated push: targets plus the rendered request. Holds the credentials, so it never
+     * leaves the server.
+     */
+    record PreparedPush(List<String> targets, PushSpec spec) {
+        PreparedPush withTargets(List<String> otherTargets) {
+            return new PreparedPush(List.copyOf(otherTargets), spec);
+        }
+    }
+
+    record PushSpec(
+            String endpointPath,
+            String body,
+            String contentType,
+            String username,
+            String password,
+            int timeoutMs,
+            boolean skipUnchanged
+    ) {
+    }
+
+    private record CallTimeouts(int connectMs, int readMs) {
+    }
+
     private record RawResponse(
             int statusCode,
             String body,
@@ -624,6 +1067,9 @@ public class CameraConfigPushService {
     ) {
     }
 
+    record ProbeResult(Integer statusCode, String authType, long durationMs, String error) {
+    }
+
     private record RequestExecution(
             Integer statusCode,
             String responseBody,
@@ -0,0 +1,393 @@
+package kz.bdl.test.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory health table of the camera fleet. Two sources feed it:
+ * <ul>
+ *     <li>a background poller that GETs {@code camera.fleet.status-path} on every configured
+ *     camera, one virtual thread per camera and at most {@code camera.fleet.poll-concurrency}
+ *     requests in flight, with the same digest handling as pushes;</li>
+ *     <li>{@link #recordEvent}, called for every event received on {@code /hikvision/events}.</li>
+ * </ul>
+ * Rows are keyed by host, so a configured target and the remote address of its events meet in one
+ * row when the target is given as an IP address. Queries only copy the table; they never touch
+ * the network. Rows for addresses that are not polled are capped at
+ * {@code camera.fleet.max-event-rows}; once the cap is hit, the ones silent for longer than
+ * {@code camera.fleet.event-stale-after} make room and events from further new addresses are not
+ * tracked.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CameraFleetMonitor {
+
+    private final CameraConfigPushService pushService;
+
+    private static final long EVICTION_INTERVAL_MS = 10_000;
+
+    private final Map<String, CameraRow> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger eventOnlyRows = new AtomicInteger();
+    private volatile long lastEvictionAt;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong sweeps = new AtomicLong();
+    private volatile long lastSweepStartedAt;
+    private volatile long lastSweepMs;
+    private volatile int lastSweepTargets;
+    private ScheduledExecutorService scheduler;
+
+    @Value("${camera.fleet.targets:}")
+    private String configuredTargets;
+
+    @Value("${camera.fleet.targets-file:}")
+    private String targetsFile;
+
+    @Value("${camera.fleet.username:}")
+    private String username;
+
+    @Value("${camera.fleet.password:}")
+    private String password;
+
+    @Value("${camera.fleet.status-path:/ISAPI/System/deviceInfo}")
+    private String statusPath;
+
+    @Value("${camera.fleet.poll-interval:60s}")
+    private Duration pollInterval;
+
+    @Value("${camera.fleet.timeout:5s}")
+    private Duration timeout;
+
+    @Value("${camera.fleet.poll-concurrency:256}")
+    private int pollConcurrency;
+
+    @Value("${camera.fleet.event-stale-after:10m}")
+    private Duration eventStaleAfter;
+
+    @Value("${camera.fleet.max-event-rows:4096}")
+    private int maxEventRows;
+
+    @PostConstruct
+    public void start() {
+        if (pollInterval.isZero() || pollInterval.isNegative()) {
+            log.info("Camera fleet poller disabled (camera.fleet.poll-interval={})", pollInterval);
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("camera-fleet-poller").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::sweepSafely, 5_000, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Marks an event from {@code remoteAddr}. Called on the ingest path, so it only touches the
+     * camera's own row.
+     */
+    public void recordEvent(String remoteAddr) {
+        if (remoteAddr == null || remoteAddr.isBlank()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String host = remoteAddr.toLowerCase(Locale.ROOT);
+        CameraRow row = rows.get(host);
+        if (row == null) {
+            if (eventOnlyRows.get() >= Math.max(1, maxEventRows)) {
+                evictSilent(now);
+                if (eventOnlyRows.get() >= Math.max(1, maxEventRows)) {
+                    return;
+                }
+            }
+            row = rows.computeIfAbsent(host, h -> {
+                eventOnlyRows.incrementAndGet();
+                return new CameraRow(true);
+            });
+        }
+        row.onEvent(now);
+    }
+
+    /**
+     * Starts a sweep in the background unless one is already running. Returns whether it started.
+     */
+    public boolean pollNow() {
+        if (sweeping.get()) {
+            return false;
+        }
+        Thread.ofVirtual().name("camera-fleet-poll-now").start(this::sweepSafely);
+        return true;
+    }
+
+    public FleetStatus status(boolean problemsOnly) {
+        long now = System.currentTimeMillis();
+        List<CameraStatus> cameras = new ArrayList<>(rows.size());
+        for (Map.Entry<String, CameraRow> entry : rows.entrySet()) {
+            CameraStatus status = entry.getValue().status(entry.getKey(), now, eventStaleAfter.toMillis());
+            if (!problemsOnly || !"online".equals(status.pollState()) || status.silent()) {
+                cameras.add(status);
+            }
+        }
+        cameras.sort(Comparator.comparing(CameraStatus::host));
+        return new FleetStatus(
+                sweeping.get(),
+                sweeps.get(),
+                lastSweepStartedAt == 0 ? null : Instant.ofEpochMilli(lastSweepStartedAt),
+                lastSweepMs,
+                lastSweepTargets,
+                rows.size(),
+                cameras
+        );
+    }
+
+    private void sweepSafely() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.warn("Camera fleet sweep failed: {}", e.toString());
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private void sweep() throws InterruptedException {
+        List<String> targets = loadTargets();
+        long startedAt = System.currentTimeMillis();
+        lastSweepStartedAt = startedAt;
+        if (targets.isEmpty()) {
+            lastSweepTargets = 0;
+            return;
+        }
+
+        String user = username.isBlank() ? null : username;
+        String pass = password.isEmpty() ? null : password;
+        int timeoutMs = (int) Math.max(1, timeout.toMillis());
+        Semaphore permits = new Semaphore(Math.max(1, pollConcurrency));
+        // Virtual threads park while waiting on the network, so thousands of cameras only need
+        // the handful of carrier threads the JDK already has.
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String target : targets) {
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        poll(target, user, pass, timeoutMs);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        lastSweepTargets = targets.size();
+        lastSweepMs = System.currentTimeMillis() - startedAt;
+        sweeps.incrementAndGet();
+        log.info("Camera fleet sweep: targets={}, took={}ms", targets.size(), lastSweepMs);
+    }
+
+    private void poll(String target, String user, String pass, int timeoutMs) {
+        String host;
+        try {
+            host = CameraConfigPushService.targetHost(target);
+        } catch (Exception e) {
+            log.warn("Skipping invalid fleet target {}: {}", target, e.getMessage());
+            return;
+        }
+        CameraConfigPushService.ProbeResult result = pushService.probe(target, statusPath, user, pass, timeoutMs);
+        row(host).onPoll(target, result, System.currentTimeMillis());
+    }
+
+    private List<String> loadTargets() {
+        List<String> raw = new ArrayList<>();
+        raw.add(configuredTargets);
+        if (targetsFile != null && !targetsFile.isBlank()) {
+            try {
+                for (String line : Files.readAllLines(Path.of(targetsFile.trim()), StandardCharsets.UTF_8)) {
+                    String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                        raw.add(trimmed);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Cannot read camera.fleet.targets-file {}: {}", targetsFile, e.toString());
+            }
+        }
+        return CameraConfigPushService.normalizeTargets(raw);
+    }
+
+    private CameraRow row(String host) {
+        CameraRow row = rows.computeIfAbsent(host, h -> new CameraRow(false));
+        if (row.markPolled()) {
+            eventOnlyRows.decrementAndGet();
+        }
+        return row;
+    }
+
+    // Only rows never polled are dropped; configured targets stay in the table.
+    private void evictSilent(long now) {
+        if (now - lastEvictionAt < EVICTION_INTERVAL_MS) {
+            return;
+        }
+        lastEvictionAt = now;
+        long staleAfterMs = eventStaleAfter.toMillis();
+        rows.entrySet().removeIf(entry -> {
+            if (!entry.getValue().evictable(now, staleAfterMs)) {
+                return false;
+            }
+            eventOnlyRows.decrementAndGet();
+            return true;
+        });
+    }
+
+    /**
+     * One camera. Event counters are lock-free because they are hit from the ingest path; poll
+     * results are written by one poller thread at a time and read as a whole under the monitor.
+     */
+    private static final class CameraRow {
+
+        private final LongAdder events = new LongAdder();
+        private volatile long lastEventAt;
+        private boolean eventOnly;
+        private String target;
+        private String pollState = "unknown";
+        private Integer statusCode;
+        private String authType;
+        private long latencyMs;
+        private long lastPolledAt;
+        private long lastOnlineAt;
+        private int consecutiveFailures;
+        private String error;
+
+        CameraRow(boolean eventOnly) {
+            this.eventOnly = eventOnly;
+            // A row created for an event is not stale until that event has been counted.
+            this.lastEventAt = eventOnly ? System.currentTimeMillis() : 0;
+        }
+
+        void onEvent(long now) {
+            events.increment();
+            lastEventAt = now;
+        }
+
+        /**
+         * Turns an event-only row into a polled one. Returns whether it was event-only before.
+         */
+        synchronized boolean markPolled() {
+            boolean was = eventOnly;
+            eventOnly = false;
+            return was;
+        }
+
+        synchronized boolean evictable(long now, long staleAfterMs) {
+            return eventOnly && now - lastEventAt > staleAfterMs;
+        }
+
+        synchronized void onPoll(String target, CameraConfigPushService.ProbeResult result, long now) {
+            this.target = target;
+            this.statusCode = result.statusCode();
+            this.authType = result.authType();
+            this.latencyMs = result.durationMs();
+            this.lastPolledAt = now;
+            this.error = result.error();
+            Integer code = result.statusCode();
+            if (code == null) {
+                pollState = "unreachable";
+            } else if (code >= 200 && code < 300) {
+                pollState = "online";
+            } else if (code == 401 || code == 403) {
+                pollState = "auth-failed";
+            } else {
+                pollState = "error";
+            }
+            if ("online".equals(pollState)) {
+                lastOnlineAt = now;
+                consecutiveFailures = 0;
+            } else {
+                consecutiveFailures++;
+            }
+        }
+
+        synchronized CameraStatus status(String host, long now, long staleAfterMs) {
+            long lastEvent = lastEventAt;
+            return new CameraStatus(
+                    host,
+                    target,
+                    pollState,
+                    statusCode,
+                    authType,
+                    lastPolledAt == 0 ? null : latencyMs,
+                    lastPolledAt == 0 ? null : Instant.ofEpochMilli(lastPolledAt),
+                    lastOnlineAt == 0 ? null : Instant.ofEpochMilli(lastOnlineAt),
+                    consecutiveFailures,
+                    error,
+                    lastEvent == 0 ? null : Instant.ofEpochMilli(lastEvent),
+                    events.sum(),
+                    lastEvent == 0 || now - lastEvent > staleAfterMs
+            );
+        }
+    }
+
+    /**
+     * {@code pollState} is {@code online}, {@code auth-failed}, {@code error}, {@code unreachable},
+     * or {@code unknown} for cameras only seen through events. {@code silent} means no event
+     * within {@code camera.fleet.event-stale-after}.
+     */
+    public record CameraStatus(
+            String host,
+            String target,
+            String pollState,
+            Integer statusCode,
+            String authType,
+            Long latencyMs,
+            Instant lastPolledAt,
+            Instant lastOnlineAt,
+            int consecutiveFailures,
+            String error,
+            Instant lastEventAt,
+            long events,
+            boolean silent
+    ) {
+    }
+
+    public record FleetStatus(
+            boolean sweeping,
+            long sweeps,
+            Instant lastSweepStartedAt,
+            long lastSweepMs,
+            int lastSweepTargets,
+            int cameras,
+            List<CameraStatus> rows
+    ) {
+    }
+}
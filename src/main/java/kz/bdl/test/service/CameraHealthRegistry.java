@@ -0,0 +1,301 @@
+package kz.bdl.test.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-camera health for ISAPI calls: recent round-trip latencies, consecutive transport
+ * failures and a circuit breaker.
+ * <p>
+ * After {@code camera.health.failure-threshold} failures in a row the circuit opens and calls to
+ * that camera fail fast. Once the open interval has passed, one call is let through as a probe:
+ * success closes the circuit, failure opens it again for twice as long (up to
+ * {@code camera.health.max-open-duration}). Only transport errors count as failures; any HTTP
+ * answer, even 4xx/5xx, proves the camera is alive.
+ * <p>
+ * Timeouts adapt to each camera. Latencies are sampled per request kind (method and path), so
+ * cheap status polls do not set the budget for config reads or writes. With enough samples, a
+ * call gets {@code p99 * multiplier} of its own kind, clamped between
+ * {@code camera.health.min-timeout} and the timeout the caller asked for. The connect timeout
+ * follows the fastest kind, since connecting costs the same whatever the request.
+ * State is kept per camera, so calls to different cameras never contend. At most
+ * {@code camera.health.max-cameras} cameras are tracked; closed circuits unused for an hour are
+ * evicted to make room, and calls to cameras beyond the cap run without a breaker.
+ */
+@Service
+public class CameraHealthRegistry {
+
+    private static final int LATENCY_SAMPLES = 64;
+    private static final int MIN_SAMPLES_FOR_TIMEOUT = 8;
+    private static final int MAX_KINDS_PER_CAMERA = 16;
+    private static final long IDLE_AFTER_MS = 3_600_000;
+    private static final long EVICTION_INTERVAL_MS = 10_000;
+
+    private final Map<String, CameraHealth> cameras = new ConcurrentHashMap<>();
+    private volatile long lastEvictionAt;
+
+    @Value("${camera.health.max-cameras:4096}")
+    private int maxCameras;
+
+    @Value("${camera.health.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${camera.health.open-duration:30s}")
+    private Duration openDuration;
+
+    @Value("${camera.health.max-open-duration:5m}")
+    private Duration maxOpenDuration;
+
+    @Value("${camera.health.timeout-multiplier:4}")
+    private double timeoutMultiplier;
+
+    @Value("${camera.health.min-timeout:2s}")
+    private Duration minTimeout;
+
+    /**
+     * Camera key for a request URI: scheme, host and port, independent of the path.
+     */
+    public static String key(URI uri) {
+        return (uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort()).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns null when the call may proceed, otherwise the reason it is refused.
+     */
+    public String admit(String key) {
+        return health(key).admit(System.currentTimeMillis());
+    }
+
+    /**
+     * @param kind what was called, such as {@code "PUT /ISAPI/Traffic/..."}; latencies are kept per kind
+     */
+    public void recordSuccess(String key, String kind, long latencyMs) {
+        health(key).onSuccess(kind, latencyMs);
+    }
+
+    public void recordFailure(String key, String error) {
+        health(key).onFailure(error, System.currentTimeMillis());
+    }
+
+    /**
+     * Timeout for the next {@code kind} call to {@code key}, never above {@code requestedMs}.
+     */
+    public int timeoutFor(String key, String kind, int requestedMs) {
+        CameraHealth health = cameras.get(key);
+        return health == null ? requestedMs : health.timeoutFor(kind, requestedMs);
+    }
+
+    /**
+     * Connect timeout for the next call to {@code key}, never above {@code requestedMs}.
+     */
+    public int connectTimeoutFor(String key, int requestedMs) {
+        CameraHealth health = cameras.get(key);
+        return health == null ? requestedMs : health.connectTimeoutFor(requestedMs);
+    }
+
+    public List<Snapshot> snapshot() {
+        List<Snapshot> out = new ArrayList<>(cameras.size());
+        for (Map.Entry<String, CameraHealth> entry : cameras.entrySet()) {
+            out.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        out.sort(Comparator.comparing(Snapshot::camera));
+        return out;
+    }
+
+    private CameraHealth health(String key) {
+        CameraHealth health = cameras.get(key);
+        if (health != null) {
+            return health;
+        }
+        if (cameras.size() >= Math.max(1, maxCameras)) {
+            long now = System.currentTimeMillis();
+            evictIdle(now);
+            if (cameras.size() >= Math.max(1, maxCameras)) {
+                // Untracked: the call goes ahead and its outcome is forgotten.
+                return new CameraHealth();
+            }
+        }
+        return cameras.computeIfAbsent(key, k -> new CameraHealth());
+    }
+
+    private void evictIdle(long now) {
+        if (now - lastEvictionAt < EVICTION_INTERVAL_MS) {
+            return;
+        }
+        lastEvictionAt = now;
+        cameras.values().removeIf(health -> health.idle(now));
+    }
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final class CameraHealth {
+
+        private final Map<String, LatencyRing> latencies = new HashMap<>();
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long successes;
+        private long failures;
+        private long currentOpenMs;
+        private long openUntil;
+        private long lastSuccessAt;
+        private long lastFailureAt;
+        private String lastError;
+        private long lastUsedAt = System.currentTimeMillis();
+
+        synchronized boolean idle(long now) {
+            return state == CircuitState.CLOSED && now - lastUsedAt > IDLE_AFTER_MS;
+        }
+
+        synchronized String admit(long now) {
+            lastUsedAt = now;
+            if (state == CircuitState.CLOSED) {
+                return null;
+            }
+            if (now < openUntil) {
+                return "Circuit open after " + consecutiveFailures + " consecutive failures, next probe in "
+                        + Math.max(1, (openUntil - now) / 1000) + "s";
+            }
+            // Let one probe through; if it never reports back, another one is allowed after the
+            // same interval.
+            state = CircuitState.HALF_OPEN;
+            openUntil = now + currentOpenMs;
+            return null;
+        }
+
+        synchronized void onSuccess(String kind, long latencyMs) {
+            LatencyRing ring = latencies.get(kind);
+            if (ring == null && latencies.size() < MAX_KINDS_PER_CAMERA) {
+                ring = new LatencyRing();
+                latencies.put(kind, ring);
+            }
+            if (ring != null) {
+                ring.add(latencyMs);
+            }
+            successes++;
+            consecutiveFailures = 0;
+            state = CircuitState.CLOSED;
+            currentOpenMs = 0;
+            lastSuccessAt = System.currentTimeMillis();
+        }
+
+        synchronized void onFailure(String error, long now) {
+            failures++;
+            consecutiveFailures++;
+            lastFailureAt = now;
+            lastError = error;
+            if (state == CircuitState.HALF_OPEN) {
+                currentOpenMs = Math.min(currentOpenMs * 2, maxOpenDuration.toMillis());
+            } else if (state == CircuitState.CLOSED && consecutiveFailures >= Math.max(1, failureThreshold)) {
+                currentOpenMs = openDuration.toMillis();
+            } else {
+                return;
+            }
+            state = CircuitState.OPEN;
+            openUntil = now + currentOpenMs;
+        }
+
+        synchronized int timeoutFor(String kind, int requestedMs) {
+            LatencyRing ring = latencies.get(kind);
+            if (ring == null || ring.count < MIN_SAMPLES_FOR_TIMEOUT) {
+                return requestedMs;
+            }
+            return adapt(ring.percentile(0.99), requestedMs);
+        }
+
+        synchronized int connectTimeoutFor(int requestedMs) {
+            long fastest = Long.MAX_VALUE;
+            for (LatencyRing ring : latencies.values()) {
+                if (ring.count >= MIN_SAMPLES_FOR_TIMEOUT) {
+                    fastest = Math.min(fastest, ring.percentile(0.99));
+                }
+            }
+            return fastest == Long.MAX_VALUE ? requestedMs : adapt(fastest, requestedMs);
+        }
+
+        private int adapt(long p99, int requestedMs) {
+            long adaptive = (long) Math.ceil(p99 * timeoutMultiplier);
+            return (int) Math.min(requestedMs, Math.max(minTimeout.toMillis(), adaptive));
+        }
+
+        synchronized Snapshot snapshot(String camera) {
+            return new Snapshot(
+                    camera,
+                    state.name().toLowerCase(Locale.ROOT).replace('_', '-'),
+                    consecutiveFailures,
+                    successes,
+                    failures,
+                    latencySnapshot(),
+                    lastSuccessAt == 0 ? null : Instant.ofEpochMilli(lastSuccessAt),
+                    lastFailureAt == 0 ? null : Instant.ofEpochMilli(lastFailureAt),
+                    lastError,
+                    state == CircuitState.CLOSED ? null : Instant.ofEpochMilli(openUntil)
+            );
+        }
+
+        // Caller holds the monitor.
+        private Map<String, Latency> latencySnapshot() {
+            Map<String, Latency> out = new TreeMap<>();
+            for (Map.Entry<String, LatencyRing> entry : latencies.entrySet()) {
+                LatencyRing ring = entry.getValue();
+                out.put(entry.getKey(), new Latency(ring.count, ring.percentile(0.50), ring.percentile(0.99)));
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Last {@link #LATENCY_SAMPLES} round trips of one request kind; guarded by the camera's monitor.
+     */
+    private static final class LatencyRing {
+        private final long[] samples = new long[LATENCY_SAMPLES];
+        private int count;
+        private int next;
+
+        void add(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        long percentile(double p) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+
+    public record Latency(int samples, long p50Ms, long p99Ms) {
+    }
+
+    public record Snapshot(
+            String camera,
+            String state,
+            int consecutiveFailures,
+            long successes,
+            long failures,
+            Map<String, Latency> latencyByKind,
+            Instant lastSuccessAt,
+            Instant lastFailureAt,
+            String lastError,
+            Instant nextProbeAt
+    ) {
+    }
+}
@@ -0,0 +1,322 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.model.LiveEventDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-camera ingest statistics, keyed by the remote address events arrive from.
+ * <p>
+ * Lifetime totals are {@link LongAdder}s. Rolling figures come from time-bucketed rings of
+ * atomic counters: 10-second slots for the 1m and 5m windows, 1-minute slots for 1h. Each slot
+ * holds event, byte, part and ok/bad counts plus a power-of-two histogram of part sizes, which
+ * gives p50/p99 as bucket upper bounds. Recording never takes a lock; a slot is recycled by
+ * whichever thread first CASes its stamp, so an increment racing with that reset can be lost,
+ * which is fine for monitoring figures.
+ * <p>
+ * The request thread only counts sizes; {@link AnprAnalyzer} reports each event's verdict through
+ * {@link #recordVerdict} once it has been worked out. At most
+ * {@code camera.stats.max-cameras} addresses are tracked; cameras idle for longer than the hour
+ * window are evicted to make room.
+ */
+@Service
+public class CameraIngestStats {
+
+    private static final long FINE_SLOT_MS = 10_000;
+    private static final int FINE_SLOTS = 31;
+    private static final long COARSE_SLOT_MS = 60_000;
+    private static final int COARSE_SLOTS = 61;
+
+    // Part sizes: bin 0 is <= 256 B, bin b holds (256 << (b - 1), 256 << b], the last is open-ended.
+    private static final int SIZE_BINS = 16;
+    private static final int F_EVENTS = 0;
+    private static final int F_BYTES = 1;
+    private static final int F_PARTS = 2;
+    private static final int F_OK = 3;
+    private static final int F_BAD = 4;
+    private static final int F_SIZES = 5;
+    private static final int FIELDS = F_SIZES + SIZE_BINS;
+
+    private static final long IDLE_AFTER_MS = 3_600_000 + COARSE_SLOT_MS;
+    private static final long EVICTION_INTERVAL_MS = 10_000;
+
+    private final Map<String, CameraCounters> cameras = new ConcurrentHashMap<>();
+    private volatile long lastEvictionAt;
+
+    @Value("${camera.stats.max-cameras:4096}")
+    private int maxCameras;
+
+    /**
+     * Records one received event. Only reads sizes, so it is cheap enough for the request thread.
+     */
+    public void record(LiveEventDto event) {
+        long now = System.currentTimeMillis();
+        CameraCounters counters = counters(event.getRemoteAddr(), now);
+        if (counters != null) {
+            counters.record(now, event.getParts());
+        }
+    }
+
+    /**
+     * Counts an event's ANPR verdict for its camera. Statuses other than ok/bad are ignored.
+     */
+    public void recordVerdict(String remoteAddr, String anprStatus) {
+        CameraCounters counters = remoteAddr == null ? null : cameras.get(remoteAddr);
+        if (counters != null) {
+            counters.recordVerdict(System.currentTimeMillis(), anprStatus);
+        }
+    }
+
+    private CameraCounters counters(String remoteAddr, long now) {
+        if (remoteAddr == null) {
+            return null;
+        }
+        CameraCounters counters = cameras.get(remoteAddr);
+        if (counters != null) {
+            return counters;
+        }
+        if (cameras.size() >= Math.max(1, maxCameras)) {
+            evictIdle(now);
+            if (cameras.size() >= Math.max(1, maxCameras)) {
+                return null;
+            }
+        }
+        return cameras.computeIfAbsent(remoteAddr, a -> new CameraCounters(now));
+    }
+
+    // Scans at most every few seconds, so a flood of new addresses does not turn into a scan per event.
+    private void evictIdle(long now) {
+        if (now - lastEvictionAt < EVICTION_INTERVAL_MS) {
+            return;
+        }
+        lastEvictionAt = now;
+        cameras.values().removeIf(counters -> now - counters.lastEventAt > IDLE_AFTER_MS);
+    }
+
+    public List<CameraStats> snapshot() {
+        long now = System.currentTimeMillis();
+        List<CameraStats> out = new ArrayList<>(cameras.size());
+        for (Map.Entry<String, CameraCounters> entry : cameras.entrySet()) {
+            out.add(entry.getValue().stats(entry.getKey(), now));
+        }
+        out.sort(Comparator.comparing(CameraStats::remoteAddr));
+        return out;
+    }
+
+    private static int sizeBin(long size) {
+        if (size <= 256) {
+            return 0;
+        }
+        int bin = 64 - Long.numberOfLeadingZeros((size - 1) >>> 8);
+        return Math.min(bin, SIZE_BINS - 1);
+    }
+
+    private static final class CameraCounters {
+
+        private final LongAdder events = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder parts = new LongAdder();
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder bad = new LongAdder();
+        private volatile long lastEventAt;
+        private final Ring fine = new Ring(FINE_SLOTS, FINE_SLOT_MS);
+        private final Ring coarse = new Ring(COARSE_SLOTS, COARSE_SLOT_MS);
+
+        CameraCounters(long createdAt) {
+            // Counts as activity, so a camera added during an eviction scan is not dropped at once.
+            this.lastEventAt = createdAt;
+        }
+
+        void record(long now, List<LiveEventDto.LivePartDto> eventParts) {
+            int fineSlot = fine.slot(now);
+            int coarseSlot = coarse.slot(now);
+            long eventBytes = 0;
+            int partCount = 0;
+            if (eventParts != null) {
+                for (LiveEventDto.LivePartDto part : eventParts) {
+                    long size = Math.max(0, part.getSize());
+                    int field = F_SIZES + sizeBin(size);
+                    fine.add(fineSlot, field, 1);
+                    coarse.add(coarseSlot, field, 1);
+                    eventBytes += size;
+                    partCount++;
+                }
+            }
+            add(fineSlot, coarseSlot, F_EVENTS, 1);
+            add(fineSlot, coarseSlot, F_BYTES, eventBytes);
+            add(fineSlot, coarseSlot, F_PARTS, partCount);
+            events.increment();
+            bytes.add(eventBytes);
+            parts.add(partCount);
+            lastEventAt = now;
+        }
+
+        void recordVerdict(long now, String anprStatus) {
+            int field;
+            if ("ok".equals(anprStatus)) {
+                field = F_OK;
+                ok.increment();
+            } else if ("bad".equals(anprStatus)) {
+                field = F_BAD;
+                bad.increment();
+            } else {
+                return;
+            }
+            add(fine.slot(now), coarse.slot(now), field, 1);
+        }
+
+        private void add(int fineSlot, int coarseSlot, int field, long delta) {
+            fine.add(fineSlot, field, delta);
+            coarse.add(coarseSlot, field, delta);
+        }
+
+        CameraStats stats(String remoteAddr, long now) {
+            long last = lastEventAt;
+            return new CameraStats(
+                    remoteAddr,
+                    events.sum(),
+                    bytes.sum(),
+                    parts.sum(),
+                    ok.sum(),
+                    bad.sum(),
+                    last == 0 ? null : Instant.ofEpochMilli(last),
+                    window(fine.sum(now, 60_000), 60),
+                    window(fine.sum(now, 300_000), 300),
+                    window(coarse.sum(now, 3_600_000), 3_600)
+            );
+        }
+
+        private static WindowStats window(long[] sums, int seconds) {
+            long okCount = sums[F_OK];
+            long badCount = sums[F_BAD];
+            long verdicts = okCount + badCount;
+            return new WindowStats(
+                    sums[F_EVENTS],
+                    sums[F_EVENTS] / (double) seconds,
+                    sums[F_BYTES] / (double) seconds,
+                    sums[F_PARTS],
+                    sizePercentile(sums, 0.50),
+                    sizePercentile(sums, 0.99),
+                    okCount,
+                    badCount,
+                    verdicts == 0 ? null : badCount / (double) verdicts
+            );
+        }
+
+        private static Long sizePercentile(long[] sums, double p) {
+            long total = 0;
+            for (int b = 0; b < SIZE_BINS; b++) {
+                total += sums[F_SIZES + b];
+            }
+            if (total == 0) {
+                return null;
+            }
+            long rank = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int b = 0; b < SIZE_BINS; b++) {
+                seen += sums[F_SIZES + b];
+                if (seen >= rank) {
+                    return 256L << b;
+                }
+            }
+            return 256L << (SIZE_BINS - 1);
+        }
+    }
+
+    /**
+     * Fixed ring of time slots, each {@link #FIELDS} counters wide. A slot's stamp is the number
+     * of the period it currently counts; stale slots are zeroed lazily on first use.
+     */
+    private static final class Ring {
+
+        private final int slots;
+        private final long slotMs;
+        private final AtomicLongArray stamps;
+        private final AtomicLongArray counters;
+
+        Ring(int slots, long slotMs) {
+            this.slots = slots;
+            this.slotMs = slotMs;
+            this.stamps = new AtomicLongArray(slots);
+            this.counters = new AtomicLongArray(slots * FIELDS);
+            for (int i = 0; i < slots; i++) {
+                stamps.set(i, -1);
+            }
+        }
+
+        int slot(long now) {
+            long period = now / slotMs;
+            int slot = (int) (period % slots);
+            long stamp = stamps.get(slot);
+            if (stamp < period && stamps.compareAndSet(slot, stamp, period)) {
+                int base = slot * FIELDS;
+                for (int f = 0; f < FIELDS; f++) {
+                    counters.set(base + f, 0);
+                }
+            }
+            return slot;
+        }
+
+        void add(int slot, int field, long delta) {
+            if (delta != 0) {
+                counters.addAndGet(slot * FIELDS + field, delta);
+            }
+        }
+
+        /**
+         * Sums the slots inside the last {@code windowMs}, including the current partial slot.
+         */
+        long[] sum(long now, long windowMs) {
+            long period = now / slotMs;
+            long oldest = period - windowMs / slotMs + 1;
+            long[] out = new long[FIELDS];
+            for (int slot = 0; slot < slots; slot++) {
+                long stamp = stamps.get(slot);
+                if (stamp < oldest || stamp > period) {
+                    continue;
+                }
+                int base = slot * FIELDS;
+                for (int f = 0; f < FIELDS; f++) {
+                    out[f] += counters.get(base + f);
+                }
+            }
+            return out;
+        }
+    }
+
+    public record WindowStats(
+            long events,
+            double eventsPerSecond,
+            double bytesPerSecond,
+            long parts,
+            Long p50PartBytes,
+            Long p99PartBytes,
+            long ok,
+            long bad,
+            Double badRatio
+    ) {
+    }
+
+    public record CameraStats(
+            String remoteAddr,
+            long totalEvents,
+            long totalBytes,
+            long totalParts,
+            long totalOk,
+            long totalBad,
+            Instant lastEventAt,
+            WindowStats lastMinute,
+            WindowStats last5Minutes,
+            WindowStats lastHour
+    ) {
+    }
+}
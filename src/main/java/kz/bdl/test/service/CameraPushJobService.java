@@ -0,0 +1,420 @@
+package kz.bdl.test.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import kz.bdl.test.model.camera.CameraPushModels;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camera pushes decoupled from the HTTP request that started them. A job gets an id, runs on a
+ * small dedicated pool (the per-camera work itself stays on the push service's virtual threads),
+ * and can be polled, streamed, cancelled and retried for its failed targets.
+ * <p>
+ * The pool and its queue are bounded; when both are full, submissions are rejected instead of
+ * piling up. Finished jobs are kept in memory up to {@code camera.push.jobs.retained}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CameraPushJobService {
+
+    private static final long STREAM_POLL_MS = 1_000;
+
+    private final CameraConfigPushService pushService;
+
+    private final LinkedHashMap<String, PushJob> jobs = new LinkedHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @Value("${camera.push.jobs.max-running:2}")
+    private int maxRunning;
+
+    @Value("${camera.push.jobs.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${camera.push.jobs.retained:50}")
+    private int retained;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, maxRunning);
+        executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                Thread.ofPlatform().name("camera-push-job-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public CameraPushModels.JobStatus submit(CameraPushModels.Request request) {
+        return submit("config", pushService.prepare(request), null);
+    }
+
+    public CameraPushModels.JobStatus submitMixedTarget(CameraPushModels.MixedTargetRequest request) {
+        return submit("mixed-target", pushService.prepare(request), null);
+    }
+
+    /**
+     * Starts a new job for the targets of {@code id} that did not succeed, including those that
+     * were never attempted because the job was cancelled. Returns {@code null} for unknown ids.
+     *
+     * @throws IllegalStateException when the job has not finished yet or nothing failed
+     */
+    public CameraPushModels.JobStatus retryFailed(String id) {
+        PushJob job = find(id);
+        if (job == null) {
+            return null;
+        }
+        List<String> failedTargets = job.failedTargets();
+        if (failedTargets.isEmpty()) {
+            throw new IllegalStateException("Job " + id + " has no failed targets to retry");
+        }
+        return submit(job.kind, job.push.withTargets(failedTargets), job.id);
+    }
+
+    /**
+     * Cancels a queued or running job. Cameras still in flight are interrupted and reported as
+     * failed; cameras never attempted are reported with outcome {@code cancelled}. Returns
+     * {@code null} for unknown ids.
+     */
+    public CameraPushModels.JobStatus cancel(String id) {
+        PushJob job = find(id);
+        if (job == null) {
+            return null;
+        }
+        if (job.requestCancel()) {
+            Future<?> future = job.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+            executor.purge();
+        }
+        return job.status(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Job status with the results from index {@code since} on, or {@code null} for unknown ids.
+     */
+    public CameraPushModels.JobStatus status(String id, int since) {
+        PushJob job = find(id);
+        return job == null ? null : job.status(Math.max(0, since));
+    }
+
+    /**
+     * All retained jobs, newest first, without their results.
+     */
+    public List<CameraPushModels.JobStatus> list() {
+        List<PushJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        List<CameraPushModels.JobStatus> out = new ArrayList<>(snapshot.size());
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            out.add(snapshot.get(i).status(Integer.MAX_VALUE));
+        }
+        return out;
+    }
+
+    /**
+     * Streams a job as NDJSON in the same frame format as the synchronous streaming push:
+     * results already collected are sent first, then new ones as they arrive, then the summary.
+     * Returns {@code null} for unknown ids.
+     */
+    public ResponseBodyEmitter stream(String id) {
+        PushJob job = find(id);
+        if (job == null) {
+            return null;
+        }
+        // Jobs can sit in the queue for a while; the stream ends when the job does.
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(0L);
+        Thread.ofVirtual().name("camera-push-job-stream-" + id).start(() -> {
+            try {
+                emitter.send(pushService.ndjsonLine(CameraPushModels.StreamFrame.start(job.summary(true))),
+                        CameraConfigPushService.NDJSON);
+                int sent = 0;
+                boolean finished;
+                do {
+                    finished = job.awaitChange(sent, STREAM_POLL_MS);
+                    for (CameraPushModels.Result result : job.resultsFrom(sent)) {
+                        emitter.send(pushService.ndjsonLine(CameraPushModels.StreamFrame.result(result)),
+                                CameraConfigPushService.NDJSON);
+                        sent++;
+                    }
+                } while (!finished);
+                emitter.send(pushService.ndjsonLine(CameraPushModels.StreamFrame.summary(job.summary(false))),
+                        CameraConfigPushService.NDJSON);
+                emitter.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } catch (Exception e) {
+                // Usually the client went away; the job itself keeps running.
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    private CameraPushModels.JobStatus submit(String kind, CameraConfigPushService.PreparedPush push, String retryOf) {
+        PushJob job = new PushJob(UUID.randomUUID().toString(), kind, push, retryOf);
+        synchronized (jobs) {
+            // Throws RejectedExecutionException when the pool and its queue are full.
+            job.future = executor.submit(() -> run(job));
+            jobs.put(job.id, job);
+            evictFinished();
+        }
+        log.info("Push job {} queued: kind={}, targets={}, retryOf={}", job.id, kind, push.targets().size(), retryOf);
+        return job.status(Integer.MAX_VALUE);
+    }
+
+    private void run(PushJob job) {
+        if (!job.start()) {
+            return;
+        }
+        try {
+            pushService.pushAll(job.push.targets(), job.push.spec(), (index, result) -> job.add(index, result));
+        } catch (Exception e) {
+            log.warn("Push job {} failed: {}", job.id, e.toString());
+        } finally {
+            job.finish();
+            log.info("Push job {} {}: ok={}, fail={}", job.id, job.state(), job.successCount(), job.failureCount());
+        }
+    }
+
+    private PushJob find(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    // Caller holds the jobs monitor. Only finished jobs are evicted, oldest first.
+    private void evictFinished() {
+        int excess = jobs.size() - Math.max(1, retained);
+        Iterator<PushJob> it = jobs.values().iterator();
+        while (excess > 0 && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    public enum JobState {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        COMPLETED_WITH_ERRORS,
+        CANCELLED;
+
+        boolean finished() {
+            return this != QUEUED && this != RUNNING;
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    /**
+     * One job. Results are appended in completion order; readers wait on the monitor.
+     */
+    private static final class PushJob {
+
+        private final String id;
+        private final String kind;
+        private final CameraConfigPushService.PreparedPush push;
+        private final String retryOf;
+        private final OffsetDateTime submittedAt = OffsetDateTime.now();
+        private final List<CameraPushModels.Result> results = new ArrayList<>();
+        private final Set<Integer> succeededIndexes = new HashSet<>();
+        private final Set<Integer> reportedIndexes = new HashSet<>();
+        private volatile Future<?> future;
+        private JobState state = JobState.QUEUED;
+        private boolean cancelRequested;
+        private OffsetDateTime startedAt;
+        private OffsetDateTime finishedAt;
+
+        PushJob(String id, String kind, CameraConfigPushService.PreparedPush push, String retryOf) {
+            this.id = id;
+            this.kind = kind;
+            this.push = push;
+            this.retryOf = retryOf;
+        }
+
+        synchronized boolean start() {
+            if (state != JobState.QUEUED) {
+                return false;
+            }
+            state = JobState.RUNNING;
+            startedAt = OffsetDateTime.now();
+            return true;
+        }
+
+        synchronized void add(int index, CameraPushModels.Result result) {
+            results.add(result);
+            reportedIndexes.add(index);
+            if (result.success()) {
+                succeededIndexes.add(index);
+            }
+            notifyAll();
+        }
+
+        synchronized void finish() {
+            if (state.finished()) {
+                return;
+            }
+            if (cancelRequested) {
+                reportNeverAttempted();
+                state = JobState.CANCELLED;
+            } else {
+                state = succeededIndexes.size() == push.targets().size()
+                        ? JobState.COMPLETED
+                        : JobState.COMPLETED_WITH_ERRORS;
+            }
+            finishedAt = OffsetDateTime.now();
+            notifyAll();
+        }
+
+        // Cameras the cancelled push never reached still get a result, so the job accounts for
+        // every target.
+        private void reportNeverAttempted() {
+            List<String> targets = push.targets();
+            for (int i = 0; i < targets.size(); i++) {
+                if (!reportedIndexes.contains(i)) {
+                    results.add(new CameraPushModels.Result(
+                            targets.get(i),
+                            null,
+                            false,
+                            null,
+                            "none",
+                            0,
+                            "",
+                            "Cancelled before it was attempted",
+                            CameraConfigPushService.OUTCOME_CANCELLED
+                    ));
+                    reportedIndexes.add(i);
+                }
+            }
+        }
+
+        /**
+         * Marks the job cancelled. A queued job finishes right away; a running one finishes when
+         * its push returns. Returns false when the job had already finished.
+         */
+        synchronized boolean requestCancel() {
+            if (state.finished()) {
+                return false;
+            }
+            cancelRequested = true;
+            if (state == JobState.QUEUED) {
+                finish();
+            }
+            return true;
+        }
+
+        /**
+         * Waits until there are results past {@code seen} or the job finishes. Returns whether
+         * the job has finished.
+         */
+        synchronized boolean awaitChange(int seen, long timeoutMs) throws InterruptedException {
+            if (results.size() <= seen && !state.finished()) {
+                wait(timeoutMs);
+            }
+            return state.finished();
+        }
+
+        synchronized List<CameraPushModels.Result> resultsFrom(int from) {
+            return from >= results.size() ? List.of() : List.copyOf(results.subList(from, results.size()));
+        }
+
+        synchronized List<String> failedTargets() {
+            if (!state.finished()) {
+                throw new IllegalStateException("Job " + id + " is still " + state.label());
+            }
+            List<String> failed = new ArrayList<>();
+            List<String> targets = push.targets();
+            for (int i = 0; i < targets.size(); i++) {
+                if (!succeededIndexes.contains(i)) {
+                    failed.add(targets.get(i));
+                }
+            }
+            return failed;
+        }
+
+        synchronized boolean isFinished() {
+            return state.finished();
+        }
+
+        synchronized JobState state() {
+            return state;
+        }
+
+        synchronized int successCount() {
+            return succeededIndexes.size();
+        }
+
+        synchronized int failureCount() {
+            return results.size() - succeededIndexes.size();
+        }
+
+        synchronized CameraPushModels.Summary summary(boolean withPayload) {
+            long durationMs = startedAt == null
+                    ? 0
+                    : Duration.between(startedAt, finishedAt == null ? OffsetDateTime.now() : finishedAt).toMillis();
+            return new CameraPushModels.Summary(
+                    submittedAt,
+                    withPayload ? push.spec().body() : null,
+                    push.targets().size(),
+                    successCount(),
+                    failureCount(),
+                    durationMs
+            );
+        }
+
+        synchronized CameraPushModels.JobStatus status(int since) {
+            int from = Math.min(since, results.size());
+            return new CameraPushModels.JobStatus(
+                    id,
+                    kind,
+                    state.label(),
+                    retryOf,
+                    submittedAt,
+                    startedAt,
+                    finishedAt,
+                    push.spec().body(),
+                    push.targets().size(),
+                    results.size(),
+                    successCount(),
+                    failureCount(),
+                    from,
+                    List.copyOf(results.subList(from, results.size()))
+            );
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.service.ServerCaptureService.CapturedEventSummary;
+import kz.bdl.test.service.ServerCaptureService.IllegalTypeSummary;
+import kz.bdl.test.service.ServerCaptureService.IllegalTypeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory catalog of captured events: a hash index by event id plus a skip list ordered
+ * newest first, so inserts are O(log n) and listing never has to sort. Secondary skip lists
+ * per remote address, ANPR status and illegal code let filtered pages start from the most
+ * selective index instead of scanning the whole catalog. Illegal type counters are kept in
+ * step with the indexes, so the summary endpoint only reads a handful of adders.
+ */
+public final class CaptureEventCatalog {
+
+    static final Comparator<Key> NEWEST_FIRST = Comparator
+            .comparing(Key::timestamp, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Key::id, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final String NO_STATUS = "none";
+
+    private final ConcurrentMap<String, CapturedEventSummary> byId = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Key, CapturedEventSummary> byTime = new ConcurrentSkipListMap<>(NEWEST_FIRST);
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> byRemoteAddr = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> byStatus = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> byIllegalCode = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IllegalTypeKey, LongAdder> illegalTypeCounters = new ConcurrentHashMap<>();
+
+    public void put(CapturedEventSummary summary) {
+        if (summary.getId() == null) {
+            return;
+        }
+        byId.compute(summary.getId(), (id, previous) -> {
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(summary);
+            return summary;
+        });
+    }
+
+    public CapturedEventSummary get(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Collection<CapturedEventSummary> newestFirst() {
+        return byTime.values();
+    }
+
+    public void clear() {
+        byId.clear();
+        byTime.clear();
+        byRemoteAddr.clear();
+        byStatus.clear();
+        byIllegalCode.clear();
+        illegalTypeCounters.clear();
+    }
+
+    public List<IllegalTypeSummary> illegalTypeCounts() {
+        List<IllegalTypeSummary> out = new ArrayList<>(illegalTypeCounters.size());
+        for (var entry : illegalTypeCounters.entrySet()) {
+            long count = entry.getValue().sum();
+            if (count > 0) {
+                out.add(new IllegalTypeSummary(entry.getKey().illegalCode(), entry.getKey().illegalName(), count));
+            }
+        }
+        out.sort(Comparator
+                .comparing(IllegalTypeSummary::eventsCount, Comparator.reverseOrder())
+                .thenComparing(IllegalTypeSummary::illegalCode, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(IllegalTypeSummary::illegalName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+        return out;
+    }
+
+    public Page query(Query query) {
+        ConcurrentNavigableMap<Key, CapturedEventSummary> view = selectIndex(query);
+        Key cursor = decodeCursor(query.cursor());
+        Key upper = query.to() == null ? null : new Key(query.to(), "");
+        Key start = cursor;
+        boolean startInclusive = false;
+        if (upper != null && (start == null || NEWEST_FIRST.compare(upper, start) > 0)) {
+            start = upper;
+            startInclusive = true;
+        }
+        if (start != null) {
+            view = view.tailMap(start, startInclusive);
+        }
+        if (query.from() != null) {
+            Key end = new Key(query.from(), null);
+            if (start != null && NEWEST_FIRST.compare(start, end) > 0) {
+                return new Page(List.of(), null, size(), false);
+            }
+            view = view.headMap(end, true);
+        }
+
+        int limit = Math.max(1, query.limit());
+        List<CapturedEventSummary> items = new ArrayList<>(Math.min(limit, 256));
+        Key last = null;
+        boolean more = false;
+        for (var entry : view.entrySet()) {
+            if (!matches(entry.getValue(), query)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page(items, more ? encodeCursor(last) : null, size(), false);
+    }
+
+    private ConcurrentNavigableMap<Key, CapturedEventSummary> selectIndex(Query query) {
+        if (query.illegalCode() != null) {
+            return indexOrEmpty(byIllegalCode, query.illegalCode());
+        }
+        if (query.remoteAddr() != null) {
+            return indexOrEmpty(byRemoteAddr, query.remoteAddr());
+        }
+        if (query.anprStatus() != null) {
+            return indexOrEmpty(byStatus, query.anprStatus());
+        }
+        return byTime;
+    }
+
+    private static ConcurrentNavigableMap<Key, CapturedEventSummary> indexOrEmpty(
+            ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> index,
+            String value
+    ) {
+        ConcurrentNavigableMap<Key, CapturedEventSummary> map = index.get(value);
+        return map != null ? map : new ConcurrentSkipListMap<>(NEWEST_FIRST);
+    }
+
+    private static boolean matches(CapturedEventSummary summary, Query query) {
+        if (query.remoteAddr() != null && !query.remoteAddr().equals(summary.getRemoteAddr())) {
+            return false;
+        }
+        if (query.anprStatus() != null && !query.anprStatus().equals(statusKey(summary))) {
+            return false;
+        }
+        if (query.illegalCode() != null && !illegalCodes(summary).contains(query.illegalCode())) {
+            return false;
+        }
+        if (query.from() != null || query.to() != null) {
+            if (summary.getTimestamp() == null) {
+                return false;
+            }
+            Instant ts = summary.getTimestamp().toInstant();
+            if (query.from() != null && ts.isBefore(query.from())) {
+                return false;
+            }
+            if (query.to() != null && ts.isAfter(query.to())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void index(CapturedEventSummary summary) {
+        Key key = Key.of(summary);
+        byTime.put(key, summary);
+        if (summary.getRemoteAddr() != null) {
+            secondary(byRemoteAddr, summary.getRemoteAddr()).put(key, summary);
+        }
+        secondary(byStatus, statusKey(summary)).put(key, summary);
+        for (String code : illegalCodes(summary)) {
+            secondary(byIllegalCode, code).put(key, summary);
+        }
+        countIllegalTypes(summary, 1);
+    }
+
+    private void unindex(CapturedEventSummary summary) {
+        Key key = Key.of(summary);
+        byTime.remove(key);
+        if (summary.getRemoteAddr() != null) {
+            removeSecondary(byRemoteAddr, summary.getRemoteAddr(), key);
+        }
+        removeSecondary(byStatus, statusKey(summary), key);
+        for (String code : illegalCodes(summary)) {
+            removeSecondary(byIllegalCode, code, key);
+        }
+        countIllegalTypes(summary, -1);
+    }
+
+    // Zeroed counters stay in the map: removing them would race with a concurrent increment,
+    // and the number of distinct illegal types is tiny anyway.
+    private void countIllegalTypes(CapturedEventSummary summary, int delta) {
+        for (IllegalTypeValue value : summary.getIllegalTypes()) {
+            if (value == null) {
+                continue;
+            }
+            String code = ServerCaptureService.normalizeIllegalValue(value.illegalCode());
+            String name = ServerCaptureService.normalizeIllegalValue(value.illegalName());
+            if (code == null && name == null) {
+                continue;
+            }
+            illegalTypeCounters.computeIfAbsent(new IllegalTypeKey(code, name), k -> new LongAdder()).add(delta);
+        }
+    }
+
+    private static ConcurrentNavigableMap<Key, CapturedEventSummary> secondary(
+            ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> index,
+            String value
+    ) {
+        return index.computeIfAbsent(value, v -> new ConcurrentSkipListMap<>(NEWEST_FIRST));
+    }
+
+    private static void removeSecondary(
+            ConcurrentMap<String, ConcurrentNavigableMap<Key, CapturedEventSummary>> index,
+            String value,
+            Key key
+    ) {
+        ConcurrentNavigableMap<Key, CapturedEventSummary> map = index.get(value);
+        if (map != null) {
+            map.remove(key);
+        }
+    }
+
+    private static String statusKey(CapturedEventSummary summary) {
+        return summary.getAnprStatus() == null ? NO_STATUS : summary.getAnprStatus();
+    }
+
+    private static Set<String> illegalCodes(CapturedEventSummary summary) {
+        Set<String> codes = new LinkedHashSet<>();
+        for (IllegalTypeValue value : summary.getIllegalTypes()) {
+            if (value != null && value.illegalCode() != null) {
+                codes.add(value.illegalCode());
+            }
+        }
+        return codes;
+    }
+
+    private static String encodeCursor(Key key) {
+        String raw = (key.timestamp() == null ? "-" : key.timestamp().toString()) + "|" + key.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Key decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String ts = raw.substring(0, sep);
+            return new Key("-".equals(ts) ? null : Instant.parse(ts), raw.substring(sep + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private record IllegalTypeKey(String illegalCode, String illegalName) {
+    }
+
+    record Key(Instant timestamp, String id) {
+        static Key of(CapturedEventSummary summary) {
+            return new Key(summary.getTimestamp() == null ? null : summary.getTimestamp().toInstant(), summary.getId());
+        }
+    }
+
+    public record Query(
+            String cursor,
+            int limit,
+            String anprStatus,
+            String illegalCode,
+            String remoteAddr,
+            Instant from,
+            Instant to
+    ) {
+    }
+
+    public record Page(
+            List<CapturedEventSummary> items,
+            String nextCursor,
+            int totalEvents,
+            boolean loading
+    ) {
+        public Page withLoading(boolean value) {
+            return value == loading ? this : new Page(items, nextCursor, totalEvents, value);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.service.ServerCaptureService.CapturedEventSummary;
+import kz.bdl.test.service.ServerCaptureService.IllegalTypeValue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of {@link CapturedEventSummary} records kept next to the event
+ * directories, so startup can rebuild the catalog without parsing every metadata.json.
+ * <p>
+ * Layout: an 8-byte magic/version header, then records of {@code [int length][int crc32][payload]}.
+ * A later record for the same event id wins. A short or checksum-failing last record is what an
+ * unclean shutdown leaves behind: the good records are kept and the file is truncated after
+ * them. Anything else that fails to read marks the whole file as corrupt and the caller falls
+ * back to a directory scan.
+ * <p>
+ * While such a scan runs the journal is in rebuild mode: appends are skipped and nothing is
+ * written until the scan's {@link #rewrite} commits, so a process that stops halfway leaves no
+ * partial journal behind and the next start scans again.
+ */
+@Slf4j
+final class CaptureIndexJournal {
+
+    private static final long MAGIC = 0x4341_5049_4458_3032L; // "CAPIDX02"
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path file;
+    private FileChannel channel;
+    private int recordCount;
+    private boolean rebuilding;
+
+    CaptureIndexJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Replays the journal into {@code sink}. Returns the number of records read, or {@code -1}
+     * when the file is missing or corrupt; in that case {@code sink} may have seen a prefix.
+     * A torn last record is cut off and does not count as corruption.
+     */
+    synchronized int replay(Consumer<CapturedEventSummary> sink) {
+        if (!Files.isRegularFile(file)) {
+            return -1;
+        }
+        int count = 0;
+        long validLength;
+        long size;
+        try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = readChannel.size();
+            if (size < Long.BYTES || size > Integer.MAX_VALUE) {
+                return -1;
+            }
+            // Read onto the heap rather than mapping, so the file can be truncated right after.
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (readChannel.read(buffer) < 0) {
+                    return -1;
+                }
+            }
+            buffer.flip();
+            if (buffer.getLong() != MAGIC) {
+                return -1;
+            }
+            CRC32 crc = new CRC32();
+            while (buffer.hasRemaining()) {
+                if (buffer.remaining() < 2 * Integer.BYTES) {
+                    break;
+                }
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    return -1;
+                }
+                if (length > buffer.remaining()) {
+                    buffer.position(buffer.position() - 2 * Integer.BYTES);
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    if (length == buffer.remaining()) {
+                        // Last record, only partly written.
+                        buffer.position(buffer.position() - 2 * Integer.BYTES);
+                        break;
+                    }
+                    return -1;
+                }
+                sink.accept(decode(payload));
+                buffer.position(buffer.position() + length);
+                count++;
+            }
+            validLength = buffer.position();
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+            return -1;
+        }
+        if (validLength < size) {
+            try (FileChannel writeChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                writeChannel.truncate(validLength);
+                writeChannel.force(false);
+            } catch (IOException e) {
+                log.warn("Cannot truncate torn tail of {}", file, e);
+                return -1;
+            }
+            log.warn("Truncated torn tail of {}: kept {} records, dropped {} bytes", file, count, size - validLength);
+        }
+        recordCount = count;
+        return count;
+    }
+
+    /**
+     * Enters rebuild mode until the next {@link #rewrite}. Events captured meanwhile must end up
+     * in that rewrite's snapshot instead.
+     */
+    synchronized void beginRebuild() {
+        closeChannel();
+        rebuilding = true;
+    }
+
+    synchronized void append(CapturedEventSummary summary) throws IOException {
+        if (rebuilding) {
+            return;
+        }
+        FileChannel target = openForAppend();
+        target.write(frame(summary));
+        recordCount++;
+    }
+
+    /**
+     * Replaces the journal with exactly one record per given event (compaction / rebuild). The
+     * snapshot is taken under the journal's monitor, so an event put into the catalog before its
+     * {@link #append} is either in the snapshot or appended to the new file, never lost between.
+     */
+    synchronized void rewrite(Supplier<? extends Collection<CapturedEventSummary>> snapshot) throws IOException {
+        closeChannel();
+        Collection<CapturedEventSummary> summaries = snapshot.get();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+        try (FileChannel out = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header());
+            for (CapturedEventSummary summary : summaries) {
+                out.write(frame(summary));
+                count++;
+            }
+            out.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        recordCount = count;
+        rebuilding = false;
+    }
+
+    synchronized void reset() throws IOException {
+        rewrite(List::of);
+    }
+
+    synchronized int recordCount() {
+        return recordCount;
+    }
+
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+            } catch (IOException ignored) {
+                // Best effort on shutdown.
+            }
+        }
+        closeChannel();
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        boolean fresh = !Files.exists(file) || Files.size(file) < Long.BYTES;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (fresh) {
+            channel.truncate(0);
+            channel.write(header());
+            recordCount = 0;
+        }
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Nothing left to flush.
+        }
+        channel = null;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(Long.BYTES).putLong(0, MAGIC);
+    }
+
+    private static ByteBuffer frame(CapturedEventSummary summary) {
+        byte[] payload = encode(summary);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(2 * Integer.BYTES + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return frame;
+    }
+
+    private static byte[] encode(CapturedEventSummary summary) {
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(utf8(summary.getId()));
+        strings.add(utf8(summary.getRemoteAddr()));
+        strings.add(utf8(summary.getMethod()));
+        strings.add(utf8(summary.getPath()));
+        strings.add(utf8(summary.getContentType()));
+        strings.add(utf8(summary.getAnprStatus()));
+        strings.add(utf8(summary.getLicensePlate()));
+        for (IllegalTypeValue value : summary.getIllegalTypes()) {
+            strings.add(utf8(value.illegalCode()));
+            strings.add(utf8(value.illegalName()));
+        }
+
+        int size = 1 + Long.BYTES + 2 * Integer.BYTES + 2 * Integer.BYTES;
+        for (byte[] s : strings) {
+            size += Integer.BYTES + (s == null ? 0 : s.length);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        OffsetDateTime timestamp = summary.getTimestamp();
+        out.put((byte) (timestamp == null ? 0 : 1));
+        out.putLong(timestamp == null ? 0 : timestamp.toEpochSecond());
+        out.putInt(timestamp == null ? 0 : timestamp.getNano());
+        out.putInt(timestamp == null ? 0 : timestamp.getOffset().getTotalSeconds());
+        out.putInt(summary.getPartsCount());
+        out.putInt(summary.getIllegalTypes().size());
+        for (byte[] s : strings) {
+            putString(out, s);
+        }
+        return out.array();
+    }
+
+    private static CapturedEventSummary decode(ByteBuffer in) {
+        boolean hasTimestamp = in.get() != 0;
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        int offsetSeconds = in.getInt();
+        int partsCount = in.getInt();
+        int illegalCount = in.getInt();
+        if (illegalCount < 0) {
+            throw new IllegalArgumentException("Negative illegal type count");
+        }
+        OffsetDateTime timestamp = hasTimestamp
+                ? OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, nano), ZoneOffset.ofTotalSeconds(offsetSeconds))
+                : null;
+
+        String id = getString(in);
+        String remoteAddr = getString(in);
+        String method = getString(in);
+        String path = getString(in);
+        String contentType = getString(in);
+        String anprStatus = getString(in);
+        String licensePlate = getString(in);
+        List<IllegalTypeValue> illegalTypes = new ArrayList<>(illegalCount);
+        for (int i = 0; i < illegalCount; i++) {
+            illegalTypes.add(new IllegalTypeValue(getString(in), getString(in)));
+        }
+        return new CapturedEventSummary(id, timestamp, remoteAddr, method, path, contentType, partsCount, anprStatus, illegalTypes, licensePlate);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer out, byte[] value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(value.length).put(value);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new IllegalArgumentException("String length exceeds record");
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,262 @@
+package kz.bdl.test.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded hand-off between request threads and dedicated writer threads. Writers drain tasks in
+ * batches. What happens when the queue is full is decided by {@link BackpressurePolicy}; only
+ * {@code SPILL} touches the disk on the producer side, and its overflow is bounded too: once
+ * {@code spillCapacity} tasks are spilled, producers block until a spilled task is taken.
+ * <p>
+ * Tasks are written in submission order. While anything is spilled, new tasks join the spill
+ * overflow behind it rather than the in-memory queue, and writers empty the queue before the
+ * overflow, so every queued task is older than every spilled one.
+ */
+@Slf4j
+public final class CaptureWriterPipeline<T> {
+
+    private static final long IDLE_POLL_MS = 200;
+
+    private final String name;
+    private final BackpressurePolicy policy;
+    private final int batchSize;
+    private final BlockingQueue<T> queue;
+    private final ConcurrentLinkedQueue<T> overflow = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger overflowDepth = new AtomicInteger();
+    private final Semaphore spillSlots;
+    private final int spillCapacity;
+    private final Consumer<T> writer;
+    private final Consumer<T> onDiscard;
+    private final UnaryOperator<T> spiller;
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+
+    public CaptureWriterPipeline(
+            String name,
+            int capacity,
+            int writerThreads,
+            int batchSize,
+            int spillCapacity,
+            BackpressurePolicy policy,
+            Consumer<T> writer,
+            Consumer<T> onDiscard,
+            UnaryOperator<T> spiller
+    ) {
+        this.name = name;
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        this.spillCapacity = Math.max(0, spillCapacity);
+        this.spillSlots = new Semaphore(this.spillCapacity);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.writer = writer;
+        this.onDiscard = onDiscard;
+        this.spiller = spiller;
+
+        for (int i = 0; i < Math.max(1, writerThreads); i++) {
+            Thread thread = new Thread(this::runWriter, name + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public void submit(T task) {
+        if (!running.get()) {
+            dropped.incrementAndGet();
+            onDiscard.accept(task);
+            return;
+        }
+        submitted.incrementAndGet();
+        switch (policy) {
+            case BLOCK -> put(task);
+            case DROP_OLDEST -> {
+                while (!queue.offer(task)) {
+                    T oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        onDiscard.accept(oldest);
+                    }
+                }
+            }
+            case SPILL -> {
+                if (spillCapacity == 0) {
+                    put(task);
+                } else if (overflowDepth.get() > 0 || !queue.offer(task)) {
+                    spill(task);
+                }
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(
+                policy.name().toLowerCase(Locale.ROOT),
+                queue.size(),
+                overflowDepth.get(),
+                queue.size() + queue.remainingCapacity(),
+                submitted.get(),
+                written.get(),
+                failed.get(),
+                dropped.get(),
+                spilled.get()
+        );
+    }
+
+    /**
+     * Stops accepting work and gives writers up to {@code timeoutMs} to flush what is queued.
+     */
+    public void shutdown(long timeoutMs) {
+        running.set(false);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread thread : threads) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                thread.join(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        T leftover;
+        while ((leftover = nextQueued()) != null) {
+            dropped.incrementAndGet();
+            onDiscard.accept(leftover);
+        }
+    }
+
+    private void runWriter() {
+        List<T> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                if (!takeBatch(batch)) {
+                    if (!running.get() && overflowDepth.get() == 0) {
+                        return;
+                    }
+                    continue;
+                }
+                for (T task : batch) {
+                    try {
+                        writer.accept(task);
+                        written.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.error("{} failed to write task", name, e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // The in-memory queue goes first: while anything is spilled, newer tasks join the overflow.
+    private boolean takeBatch(List<T> batch) throws InterruptedException {
+        T first = queue.poll();
+        if (first == null) {
+            T spilledTask;
+            while (batch.size() < batchSize && (spilledTask = pollOverflow()) != null) {
+                batch.add(spilledTask);
+            }
+            if (!batch.isEmpty()) {
+                return true;
+            }
+            first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return false;
+            }
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        return true;
+    }
+
+    private void put(T task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            onDiscard.accept(task);
+        }
+    }
+
+    // Waits for a free spill slot, so a task is never queued ahead of one spilled before it.
+    private void spill(T task) {
+        try {
+            spillSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            onDiscard.accept(task);
+            return;
+        }
+        overflowDepth.incrementAndGet();
+        try {
+            overflow.add(spiller.apply(task));
+        } catch (RuntimeException e) {
+            overflowDepth.decrementAndGet();
+            spillSlots.release();
+            throw e;
+        }
+        spilled.incrementAndGet();
+    }
+
+    private T nextQueued() {
+        T task = queue.poll();
+        return task != null ? task : pollOverflow();
+    }
+
+    private T pollOverflow() {
+        T task = overflow.poll();
+        if (task != null) {
+            overflowDepth.decrementAndGet();
+            spillSlots.release();
+        }
+        return task;
+    }
+
+    public enum BackpressurePolicy {
+        BLOCK,
+        DROP_OLDEST,
+        SPILL
+    }
+
+    public record Stats(
+            String policy,
+            int queueDepth,
+            int spilledDepth,
+            int capacity,
+            long submitted,
+            long written,
+            long failed,
+            long dropped,
+            long spilled
+    ) {
+    }
+}
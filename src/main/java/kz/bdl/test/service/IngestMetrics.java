@@ -0,0 +1,110 @@
+package kz.bdl.test.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Meters of the {@code /hikvision/events} path, created once so the request thread only records.
+ * <p>
+ * {@code hikvision.ingest.request} times the whole request and {@code hikvision.ingest.stage} each
+ * step of handling an event: read and stats on the request thread, then analyze, publish and
+ * capture on the {@link AnprAnalyzer} lanes. Both publish histograms, so latency percentiles
+ * can be aggregated in Prometheus. Gauges expose live viewers and the capture catalog size.
+ */
+@Component
+public class IngestMetrics {
+
+    private final Timer request;
+    private final Timer read;
+    private final Timer stats;
+    private final Timer analyze;
+    private final Timer publish;
+    private final Timer capture;
+    private final Counter events;
+    private final Counter parts;
+    private final Counter bytes;
+    private final DistributionSummary partSize;
+
+    public IngestMetrics(MeterRegistry registry, LiveEventHub hub, ServerCaptureService captureService) {
+        request = Timer.builder("hikvision.ingest.request")
+                .description("Time to handle one POST /hikvision/events")
+                .publishPercentileHistogram()
+                .register(registry);
+        read = stage(registry, "read");
+        stats = stage(registry, "stats");
+        analyze = stage(registry, "analyze");
+        publish = stage(registry, "publish");
+        capture = stage(registry, "capture");
+        events = Counter.builder("hikvision.ingest.events")
+                .description("Events received")
+                .register(registry);
+        parts = Counter.builder("hikvision.ingest.parts")
+                .description("Parts received")
+                .register(registry);
+        bytes = Counter.builder("hikvision.ingest.bytes")
+                .description("Part bytes received")
+                .baseUnit("bytes")
+                .register(registry);
+        partSize = DistributionSummary.builder("hikvision.ingest.part.size")
+                .description("Size of received parts")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        Gauge.builder("live.subscribers", hub, LiveEventHub::subscriberCount)
+                .description("Connected live SSE viewers")
+                .register(registry);
+        Gauge.builder("live.inbox.depth", hub, LiveEventHub::inboxDepth)
+                .description("Events waiting for the live dispatcher")
+                .register(registry);
+        Gauge.builder("capture.catalog.events", captureService, ServerCaptureService::eventCount)
+                .description("Events in the capture catalog")
+                .register(registry);
+    }
+
+    private static Timer stage(MeterRegistry registry, String stage) {
+        return Timer.builder("hikvision.ingest.stage")
+                .description("Time spent in one step of handling an event")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Timer request() {
+        return request;
+    }
+
+    public Timer read() {
+        return read;
+    }
+
+    public Timer stats() {
+        return stats;
+    }
+
+    public Timer analyze() {
+        return analyze;
+    }
+
+    public Timer publish() {
+        return publish;
+    }
+
+    public Timer capture() {
+        return capture;
+    }
+
+    public void recordPart(long size) {
+        parts.increment();
+        bytes.increment(size);
+        partSize.record(size);
+    }
+
+    public void recordEvent() {
+        events.increment();
+    }
+}
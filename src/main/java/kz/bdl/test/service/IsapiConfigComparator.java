@@ -0,0 +1,173 @@
+package kz.bdl.test.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides whether a camera's current ISAPI configuration already contains a payload we are about
+ * to PUT, so the write can be skipped.
+ * <p>
+ * The comparison is semantic and one-sided: every value in the payload must be present in the
+ * current document at the same path, while extra fields the camera reports are ignored. XML
+ * namespaces and formatting are ignored, numbers compare by value and booleans ignore case.
+ * An empty element in the payload also matches a missing one. Anything that cannot be parsed
+ * counts as "different", so the caller falls back to writing.
+ */
+final class IsapiConfigComparator {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private IsapiConfigComparator() {
+    }
+
+    static boolean covers(String contentType, String current, String desired) {
+        if (current == null || current.isBlank() || desired == null) {
+            return false;
+        }
+        try {
+            if (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json")) {
+                return coversJson(JSON.readTree(current), JSON.readTree(desired));
+            }
+            return coversXml(parseXml(current), parseXml(desired));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean coversXml(Element current, Element desired) {
+        if (!localName(current).equals(localName(desired))) {
+            return false;
+        }
+        Map<String, List<Element>> desiredChildren = childElements(desired);
+        if (desiredChildren.isEmpty()) {
+            return sameValue(current.getTextContent(), desired.getTextContent());
+        }
+        Map<String, List<Element>> currentChildren = childElements(current);
+        for (Map.Entry<String, List<Element>> entry : desiredChildren.entrySet()) {
+            List<Element> wanted = entry.getValue();
+            List<Element> present = currentChildren.getOrDefault(entry.getKey(), List.of());
+            for (int i = 0; i < wanted.size(); i++) {
+                Element want = wanted.get(i);
+                if (i >= present.size()) {
+                    if (isEmptyLeaf(want)) {
+                        continue;
+                    }
+                    return false;
+                }
+                if (!coversXml(present.get(i), want)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean coversJson(JsonNode current, JsonNode desired) {
+        if (current == null || current.isMissingNode()) {
+            return desired.isNull() || (desired.isTextual() && desired.asText().isBlank());
+        }
+        if (desired.isObject()) {
+            if (!current.isObject()) {
+                return false;
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = desired.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!coversJson(current.path(field.getKey()), field.getValue())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isArray()) {
+            // Cameras list more entries than we send (one per rule mode, for instance), so each
+            // desired element only has to be covered by some current element.
+            if (!current.isArray()) {
+                return false;
+            }
+            for (JsonNode want : desired) {
+                boolean found = false;
+                for (JsonNode have : current) {
+                    if (coversJson(have, want)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isNull()) {
+            return current.isNull();
+        }
+        if (current.isContainerNode()) {
+            return false;
+        }
+        return sameValue(current.asText(), desired.asText());
+    }
+
+    private static boolean sameValue(String current, String desired) {
+        String a = current == null ? "" : current.trim();
+        String b = desired == null ? "" : desired.trim();
+        if (a.equals(b)) {
+            return true;
+        }
+        if (isBoolean(a) && isBoolean(b)) {
+            return a.equalsIgnoreCase(b);
+        }
+        try {
+            return new BigDecimal(a).compareTo(new BigDecimal(b)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isBoolean(String value) {
+        return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+    }
+
+    private static boolean isEmptyLeaf(Element element) {
+        return childElements(element).isEmpty() && element.getTextContent().isBlank();
+    }
+
+    private static Map<String, List<Element>> childElements(Element parent) {
+        Map<String, List<Element>> out = new LinkedHashMap<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element child) {
+                out.computeIfAbsent(localName(child), k -> new ArrayList<>(1)).add(child);
+            }
+        }
+        return out;
+    }
+
+    private static String localName(Element element) {
+        return element.getLocalName() != null ? element.getLocalName() : element.getTagName();
+    }
+
+    private static Element parseXml(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setExpandEntityReferences(false);
+        DocumentBuilder builder = factory.newDocumentBuilder();
+        return builder.parse(new InputSource(new StringReader(xml.trim()))).getDocumentElement();
+    }
+}
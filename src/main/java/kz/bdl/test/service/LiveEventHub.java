@@ -1,40 +1,963 @@
 package kz.bdl.test.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import kz.bdl.test.model.LiveEventDto;
+import kz.bdl.test.model.PartContent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Fan-out of live camera events to SSE subscribers.
+ * <p>
+ * {@link #publish} only retains the part handles and drops the event into a bounded inbox, so
+ * ingest never waits on a browser. A dispatcher thread encodes each event
+ * once and offers it to every subscriber's own bounded queue; each subscriber is drained by its
+ * own virtual thread. Subscribers may filter by camera, path, content type and ANPR verdict;
+ * the filters are evaluated per distinct filter, not per subscriber. Thin subscribers get part
+ * URLs instead of inline base64, backed by {@link LivePartCache}. A subscriber that falls behind
+ * loses events according to {@link OverflowPolicy} instead of slowing down everyone else.
+ * <p>
+ * Bursts are bounded per subscriber: an optional latest-wins per camera, applied only to events
+ * that passed the subscriber's filter, and a token-bucket rate cap that skips frames rather than
+ * counting as overflow. With {@code live.hub.coalesce-backlog}, a dispatcher that is behind also
+ * skips an event for coalescing subscribers that will certainly receive a newer one from the same
+ * camera. Skipped events are reported in periodic "summary" events.
+ * <p>
+ * Every event gets an SSE id and is kept in a {@link LiveReplayBuffer} as its encoded thin frame,
+ * so a client that reconnects with {@code Last-Event-ID} receives exactly the events it missed.
+ * Full frames are kept when a full viewer already paid for them; otherwise the first full replay
+ * rebuilds one from {@link LivePartCache} and keeps it. Once the cached parts are gone, full
+ * viewers get an "event-summary" frame with the metadata only.
+ */
 @Service
+@Slf4j
+@RequiredArgsConstructor
 public class LiveEventHub {
 
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private static final long IDLE_POLL_MS = 500;
+    private static final String PART_URL_PREFIX = "/ui/stream/parts/";
 
-    public SseEmitter subscribe() {
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final LivePartCache partCache;
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    // Subscribers grouped by identical filter, and filters indexed by camera address, so an event
+    // is matched once per distinct filter that could apply to its camera, not once per viewer.
+    private final Object indexLock = new Object();
+    private final Map<StreamFilter, Set<Subscriber>> groups = new ConcurrentHashMap<>();
+    private final Map<String, Set<StreamFilter>> filtersByRemoteAddr = new ConcurrentHashMap<>();
+    private final Set<StreamFilter> anyRemoteAddrFilters = ConcurrentHashMap.newKeySet();
+    // Held while an event is fanned out and while a new subscriber takes its replay snapshot,
+    // so every event is either in the snapshot or in the subscriber's queue, never both.
+    private final Object dispatchLock = new Object();
+    private LiveReplayBuffer replayBuffer;
+    // Events are only recorded without viewers for a while after one has left, never at startup.
+    private volatile boolean subscriberLeft;
+    private volatile long lastSubscriberLeftNanos;
+
+    private BlockingQueue<LiveEventDto> inbox;
+    private Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong inboxDropped = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+
+    @Value("${live.hub.inbox-capacity:1024}")
+    private int inboxCapacity;
+
+    @Value("${live.subscriber.queue-capacity:32}")
+    private int subscriberQueueCapacity;
+
+    @Value("${live.subscriber.overflow:drop-oldest}")
+    private String subscriberOverflow;
+
+    @Value("${live.replay.max-events:500}")
+    private int replayMaxEvents;
+
+    @Value("${live.replay.max-bytes:64MB}")
+    private DataSize replayMaxBytes;
+
+    @Value("${live.replay.retention:5m}")
+    private Duration replayRetention;
+
+    @Value("${live.subscriber.coalesce-per-camera:false}")
+    private boolean defaultCoalescePerCamera;
+
+    @Value("${live.subscriber.max-events-per-second:0}")
+    private double defaultMaxEventsPerSecond;
+
+    @Value("${live.summary.interval:5s}")
+    private Duration summaryInterval;
+
+    @Value("${live.hub.coalesce-backlog:false}")
+    private boolean coalesceBacklog;
+
+    // Newest event per camera still waiting in the inbox; lets the dispatcher see that a newer
+    // event from the same camera is queued behind the one it is dispatching.
+    private final Map<String, LiveEventDto> latestQueued = new ConcurrentHashMap<>();
+    private final AtomicLong backlogCoalesced = new AtomicLong();
+
+    private OverflowPolicy overflowPolicy;
+
+    @PostConstruct
+    public void init() {
+        inbox = new ArrayBlockingQueue<>(Math.max(1, inboxCapacity));
+        replayBuffer = new LiveReplayBuffer(replayMaxEvents, replayMaxBytes.toBytes(), replayRetention.toNanos());
+        overflowPolicy = OverflowPolicy.valueOf(subscriberOverflow.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        dispatcher = Thread.ofVirtual().name("live-hub-dispatcher").start(this::runDispatcher);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        subscribers.values().forEach(Subscriber::close);
+        LiveEventDto leftover;
+        while ((leftover = inbox.poll()) != null) {
+            releaseParts(leftover);
+        }
+    }
+
+    /**
+     * @param lastEventId id of the last event the client saw, from the {@code Last-Event-ID}
+     *                    header of a reconnecting {@code EventSource}; {@code null} for a fresh stream
+     */
+    public SseEmitter subscribe(String clientAddr, StreamMode mode, StreamFilter filter, Delivery delivery, String lastEventId) {
         SseEmitter emitter = new SseEmitter(0L);
-        emitters.add(emitter);
+        Subscriber subscriber = new Subscriber(UUID.randomUUID().toString(), clientAddr, mode,
+                filter == null ? StreamFilter.ALL : filter, delivery == null ? delivery(null, null) : delivery,
+                emitter, Math.max(1, subscriberQueueCapacity));
+        LiveReplayBuffer.Slice replay;
+        synchronized (dispatchLock) {
+            subscribers.put(subscriber.id, subscriber);
+            register(subscriber);
+            replay = replayBuffer.since(lastEventId);
+        }
 
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
-        emitter.onError(e -> emitters.remove(emitter));
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
 
         try {
             emitter.send(SseEmitter.event().name("status").data("connected"));
+            if (replay.truncated()) {
+                emitter.send(SseEmitter.event().name("status").data("replay-truncated"));
+            }
         } catch (IOException ignored) {}
 
+        List<LiveReplayBuffer.Entry> backlog = new ArrayList<>();
+        for (LiveReplayBuffer.Entry entry : replay.entries()) {
+            if (subscriber.filter.matches(entry.summary())) {
+                backlog.add(entry);
+            }
+        }
+        subscriber.start(backlog);
         return emitter;
     }
 
+    /**
+     * Delivery settings for a new subscriber; {@code null} arguments fall back to the configured defaults.
+     */
+    public Delivery delivery(Boolean coalescePerCamera, Double maxEventsPerSecond) {
+        return new Delivery(
+                coalescePerCamera != null ? coalescePerCamera : defaultCoalescePerCamera,
+                maxEventsPerSecond != null ? maxEventsPerSecond : defaultMaxEventsPerSecond
+        );
+    }
+
+    /**
+     * Hands the event over to the dispatcher. Never blocks: when the inbox is full the oldest
+     * pending event is dropped. The caller keeps its own references to the part contents.
+     */
     public void publish(LiveEventDto event) {
-        for (SseEmitter emitter : emitters) {
+        if (!running || (subscribers.isEmpty() && !awaitingReconnect())) {
+            return;
+        }
+        published.incrementAndGet();
+        LiveEventDto retained = retainParts(event);
+        if (retained.getRemoteAddr() != null) {
+            latestQueued.put(retained.getRemoteAddr(), retained);
+        }
+        while (!inbox.offer(retained)) {
+            LiveEventDto oldest = inbox.poll();
+            if (oldest != null) {
+                inboxDropped.incrementAndGet();
+                dequeued(oldest);
+                releaseParts(oldest);
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public int inboxDepth() {
+        return inbox.size();
+    }
+
+    public HubStats stats() {
+        List<SubscriberStats> perSubscriber = new ArrayList<>(subscribers.size());
+        for (Subscriber subscriber : subscribers.values()) {
+            perSubscriber.add(subscriber.stats());
+        }
+        perSubscriber.sort(Comparator.comparing(SubscriberStats::connectedAt));
+        return new HubStats(
+                overflowPolicy.name().toLowerCase(Locale.ROOT),
+                inbox.size(),
+                inbox.size() + inbox.remainingCapacity(),
+                published.get(),
+                inboxDropped.get(),
+                dispatched.get(),
+                backlogCoalesced.get(),
+                groups.size(),
+                partCache.stats(),
+                replayStats(),
+                perSubscriber
+        );
+    }
+
+    private void runDispatcher() {
+        while (running) {
+            LiveEventDto event;
+            try {
+                event = inbox.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (event == null) {
+                continue;
+            }
             try {
-                emitter.send(SseEmitter.event().name("event").data(event));
+                LiveEventDto newer = dequeued(event);
+                dispatch(event, coalesceBacklog ? newer : null);
+                dispatched.incrementAndGet();
             } catch (Exception e) {
-                emitters.remove(emitter);
+                log.warn("Failed to dispatch live event {}", event.getId(), e);
+            } finally {
+                releaseParts(event);
+            }
+        }
+    }
+
+    /**
+     * @param newer a newer event from the same camera still in the inbox, or {@code null}; coalescing
+     *              subscribers that will certainly receive it skip this one
+     */
+    private void dispatch(LiveEventDto event, LiveEventDto newer) throws IOException {
+        long sequence;
+        synchronized (dispatchLock) {
+            sequence = replayBuffer.nextSequence();
+        }
+        String eventId = replayBuffer.eventId(sequence);
+        boolean recording = replayBuffer.enabled();
+
+        // Frames are encoded before taking the lock, and only for the modes someone is waiting
+        // for: an event nobody matches is never serialized, and subscribe() is never held up by
+        // base64 work. Replay keeps the thin frame, which is small and encoded once.
+        boolean wantFull = false;
+        boolean wantThin = false;
+        for (Subscriber subscriber : matchingSubscribers(event)) {
+            if (!subscriber.supersededBy(newer)) {
+                wantFull |= subscriber.mode == StreamMode.FULL;
+                wantThin |= subscriber.mode == StreamMode.THIN;
+            }
+        }
+        LiveEventDto thinEvent = recording || wantThin ? thin(event) : null;
+        Frame fullFrame = wantFull ? encode(event, eventId) : null;
+        Frame thinFrame = recording || wantThin ? encode(thinEvent, eventId) : null;
+
+        synchronized (dispatchLock) {
+            long enqueuedAt = System.nanoTime();
+            boolean coalesced = false;
+            for (Subscriber subscriber : matchingSubscribers(event)) {
+                if (subscriber.supersededBy(newer)) {
+                    subscriber.noteCoalesced(event.getRemoteAddr());
+                    coalesced = true;
+                    continue;
+                }
+                // A subscriber that arrived since the first pass may need a mode nobody else did.
+                Frame frame;
+                if (subscriber.mode == StreamMode.THIN) {
+                    if (thinFrame == null) {
+                        if (thinEvent == null) {
+                            thinEvent = thin(event);
+                        }
+                        thinFrame = encode(thinEvent, eventId);
+                    }
+                    frame = thinFrame;
+                } else {
+                    if (fullFrame == null) {
+                        fullFrame = encode(event, eventId);
+                    }
+                    frame = fullFrame;
+                }
+                subscriber.offer(new Envelope(frame.data(), event.getRemoteAddr(), enqueuedAt));
+            }
+            if (coalesced) {
+                backlogCoalesced.incrementAndGet();
+            }
+            if (recording) {
+                replayBuffer.append(new LiveReplayBuffer.Entry(
+                        sequence,
+                        enqueuedAt,
+                        thinEvent,
+                        thinFrame.data(),
+                        thinFrame.bytes(),
+                        fullFrame == null ? null : fullFrame.data(),
+                        fullFrame == null ? 0 : fullFrame.bytes()
+                ));
+            }
+        }
+    }
+
+    /**
+     * Marks the event as taken off the inbox; returns the newest event from the same camera that
+     * is still queued, or {@code null} when there is none.
+     */
+    private LiveEventDto dequeued(LiveEventDto event) {
+        if (event.getRemoteAddr() == null) {
+            return null;
+        }
+        LiveEventDto latest = latestQueued.get(event.getRemoteAddr());
+        if (latest == null || latest == event) {
+            latestQueued.remove(event.getRemoteAddr(), event);
+            return null;
+        }
+        return latest;
+    }
+
+    private boolean awaitingReconnect() {
+        return replayBuffer.enabled()
+                && subscriberLeft
+                && System.nanoTime() - lastSubscriberLeftNanos < replayRetention.toNanos();
+    }
+
+    private LiveReplayBuffer.Stats replayStats() {
+        synchronized (dispatchLock) {
+            return replayBuffer.stats();
+        }
+    }
+
+    private List<Subscriber> matchingSubscribers(LiveEventDto event) {
+        List<Subscriber> matched = new ArrayList<>();
+        collectMatching(anyRemoteAddrFilters, event, matched);
+        if (event.getRemoteAddr() != null) {
+            Set<StreamFilter> byAddr = filtersByRemoteAddr.get(event.getRemoteAddr());
+            if (byAddr != null) {
+                collectMatching(byAddr, event, matched);
             }
         }
+        return matched;
+    }
+
+    private void collectMatching(Set<StreamFilter> filters, LiveEventDto event, List<Subscriber> out) {
+        for (StreamFilter filter : filters) {
+            if (!filter.matches(event)) {
+                continue;
+            }
+            Set<Subscriber> group = groups.get(filter);
+            if (group != null) {
+                out.addAll(group);
+            }
+        }
+    }
+
+    private void register(Subscriber subscriber) {
+        StreamFilter filter = subscriber.filter;
+        synchronized (indexLock) {
+            groups.computeIfAbsent(filter, f -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            if (filter.remoteAddr() == null) {
+                anyRemoteAddrFilters.add(filter);
+            } else {
+                filtersByRemoteAddr.computeIfAbsent(filter.remoteAddr(), a -> ConcurrentHashMap.newKeySet()).add(filter);
+            }
+        }
+    }
+
+    private void unregister(Subscriber subscriber) {
+        StreamFilter filter = subscriber.filter;
+        synchronized (indexLock) {
+            Set<Subscriber> group = groups.get(filter);
+            if (group == null || !group.remove(subscriber) || !group.isEmpty()) {
+                return;
+            }
+            groups.remove(filter);
+            if (filter.remoteAddr() == null) {
+                anyRemoteAddrFilters.remove(filter);
+                return;
+            }
+            Set<StreamFilter> byAddr = filtersByRemoteAddr.get(filter.remoteAddr());
+            if (byAddr != null) {
+                byAddr.remove(filter);
+                if (byAddr.isEmpty()) {
+                    filtersByRemoteAddr.remove(filter.remoteAddr());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes the event to UTF-8 JSON exactly once, while the hub still holds the part
+     * handles, and wraps it in a complete SSE frame. Every subscriber writes the same immutable
+     * bytes, so N viewers cost one Jackson pass instead of N.
+     */
+    private Frame encode(LiveEventDto event, String eventId) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(event);
+        return new Frame(SseEmitter.event().id(eventId).name("event").data(json, MediaType.APPLICATION_JSON).build(), json.length);
+    }
+
+    /**
+     * Full frame for a replayed event that no full viewer saw live: the bytes come back from
+     * {@link LivePartCache}. If any part has expired there, the event is sent as an
+     * "event-summary" frame instead, so the client never takes dead URLs for part bytes.
+     */
+    private Frame encodeFromCache(LiveEventDto summary, String eventId) throws IOException {
+        if (summary.getParts() == null || summary.getId() == null) {
+            return encode(summary, eventId);
+        }
+        List<LiveEventDto.LivePartDto> parts = new ArrayList<>(summary.getParts().size());
+        List<PartContent> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < summary.getParts().size(); i++) {
+                LiveEventDto.LivePartDto part = summary.getParts().get(i);
+                if (part.getUrl() == null) {
+                    parts.add(part);
+                    continue;
+                }
+                LivePartCache.CachedPart cached = partCache.open(summary.getId(), i);
+                if (cached == null) {
+                    return encodeSummary(summary, eventId);
+                }
+                opened.add(cached.content());
+                parts.add(part.toBuilder().url(null).content(cached.content()).build());
+            }
+            return encode(summary.toBuilder().parts(parts).build(), eventId);
+        } finally {
+            opened.forEach(PartContent::release);
+        }
+    }
+
+    private Frame encodeSummary(LiveEventDto summary, String eventId) throws IOException {
+        List<LiveEventDto.LivePartDto> parts = new ArrayList<>(summary.getParts().size());
+        for (LiveEventDto.LivePartDto part : summary.getParts()) {
+            parts.add(part.toBuilder().url(null).build());
+        }
+        byte[] json = objectMapper.writeValueAsBytes(summary.toBuilder().parts(parts).build());
+        return new Frame(SseEmitter.event().id(eventId).name("event-summary").data(json, MediaType.APPLICATION_JSON).build(), json.length);
+    }
+
+    private static LiveEventDto withoutPartBytes(LiveEventDto event) {
+        if (event.getParts() == null) {
+            return event.toBuilder().build();
+        }
+        List<LiveEventDto.LivePartDto> parts = new ArrayList<>(event.getParts().size());
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            parts.add(part.toBuilder().base64(null).content(null).build());
+        }
+        return event.toBuilder().parts(parts).build();
+    }
+
+    /**
+     * Copy of the event without part bytes: each part carries a URL instead, served from
+     * {@link LivePartCache} for as long as the event stays there.
+     */
+    private LiveEventDto thin(LiveEventDto event) {
+        if (event.getParts() == null || event.getId() == null) {
+            return withoutPartBytes(event);
+        }
+        List<LiveEventDto.LivePartDto> parts = new ArrayList<>(event.getParts().size());
+        List<LivePartCache.CachedPart> cached = new ArrayList<>(event.getParts().size());
+        for (int i = 0; i < event.getParts().size(); i++) {
+            LiveEventDto.LivePartDto part = event.getParts().get(i);
+            PartContent content = part.getContent();
+            cached.add(new LivePartCache.CachedPart(content == null ? null : content.retain(),
+                    part.getContentType(), part.getFilename()));
+            parts.add(part.toBuilder()
+                    .base64(null)
+                    .content(null)
+                    .url(content == null ? null : PART_URL_PREFIX + event.getId() + "/" + i)
+                    .build());
+        }
+        partCache.put(event.getId(), cached);
+        return event.toBuilder().parts(parts).build();
+    }
+
+    private static LiveEventDto retainParts(LiveEventDto event) {
+        if (event.getParts() == null) {
+            return event.toBuilder().build();
+        }
+        List<LiveEventDto.LivePartDto> parts = new ArrayList<>(event.getParts().size());
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            PartContent content = part.getContent();
+            parts.add(content == null ? part : part.toBuilder().content(content.retain()).build());
+        }
+        return event.toBuilder().parts(parts).build();
+    }
+
+    private static void releaseParts(LiveEventDto event) {
+        if (event.getParts() == null) {
+            return;
+        }
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            if (part.getContent() != null) {
+                part.getContent().release();
+            }
+        }
+    }
+
+    private record Frame(Set<ResponseBodyEmitter.DataWithMediaType> data, long bytes) {
+    }
+
+    private record Envelope(Set<ResponseBodyEmitter.DataWithMediaType> frame, String camera, long enqueuedAtNanos) {
+    }
+
+    /**
+     * Token bucket for one subscriber: {@code rate} events per second with a burst of one
+     * second's worth. A rate of zero or less never waits.
+     */
+    private static final class RateLimiter {
+        private final double rate;
+        private final double burst;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        RateLimiter(double rate) {
+            this.rate = rate;
+            this.burst = Math.max(1, rate);
+            this.tokens = burst;
+        }
+
+        /**
+         * Nanoseconds until a token is available; 0 means one was taken.
+         */
+        long tryAcquire() {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * 1e9 / rate);
+        }
+    }
+
+    private final class Subscriber {
+        private final String id;
+        private final String clientAddr;
+        private final StreamMode mode;
+        private final StreamFilter filter;
+        private final Delivery delivery;
+        private final Instant connectedAt = Instant.now();
+        private final SseEmitter emitter;
+        private final int capacity;
+
+        // Keyed by camera in latest-wins mode, by a running number otherwise; insertion order is send order.
+        private final LinkedHashMap<Object, Envelope> pending = new LinkedHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final RateLimiter limiter;
+        private long offered;
+        // Set while the sender waits for the rate limit, so a queue filled by throttling is not
+        // treated as a stalled client.
+        private volatile boolean throttled;
+
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        // Skipped events per camera since the last summary; guarded by lock.
+        private final Map<String, Long> skippedSinceSummary = new HashMap<>();
+        private volatile Thread sender;
+        private volatile boolean closed;
+
+        Subscriber(String id, String clientAddr, StreamMode mode, StreamFilter filter, Delivery delivery,
+                   SseEmitter emitter, int capacity) {
+            this.id = id;
+            this.clientAddr = clientAddr;
+            this.mode = mode;
+            this.filter = filter;
+            this.delivery = delivery;
+            this.emitter = emitter;
+            this.capacity = capacity;
+            this.limiter = new RateLimiter(delivery.maxEventsPerSecond());
+        }
+
+        void start(List<LiveReplayBuffer.Entry> backlog) {
+            sender = Thread.ofVirtual().name("live-sse-" + id).start(() -> {
+                if (replay(backlog)) {
+                    drain();
+                }
+            });
+        }
+
+        void offer(Envelope envelope) {
+            if (closed) {
+                return;
+            }
+            boolean disconnect = false;
+            lock.lock();
+            try {
+                Object key = delivery.coalescePerCamera() && envelope.camera() != null ? envelope.camera() : offered++;
+                Envelope replaced = pending.remove(key);
+                if (replaced != null) {
+                    coalesced.incrementAndGet();
+                    noteSkipped(replaced.camera());
+                }
+                if (pending.size() >= capacity) {
+                    OverflowPolicy policy = overflowPolicy == OverflowPolicy.DISCONNECT && throttled
+                            ? OverflowPolicy.DROP_OLDEST
+                            : overflowPolicy;
+                    switch (policy) {
+                        case DROP_OLDEST -> {
+                            Iterator<Envelope> it = pending.values().iterator();
+                            Envelope oldest = it.next();
+                            it.remove();
+                            dropped.incrementAndGet();
+                            noteSkipped(oldest.camera());
+                        }
+                        case DROP_NEWEST -> {
+                            dropped.incrementAndGet();
+                            noteSkipped(envelope.camera());
+                            return;
+                        }
+                        case DISCONNECT -> {
+                            dropped.incrementAndGet();
+                            disconnect = true;
+                        }
+                    }
+                }
+                if (!disconnect) {
+                    pending.put(key, envelope);
+                    changed.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (disconnect) {
+                log.info("Disconnecting live subscriber {} ({}): queue full", id, clientAddr);
+                emitter.complete();
+                close();
+            }
+        }
+
+        /**
+         * Whether this subscriber may skip an event because {@code newer}, from the same camera,
+         * is queued and passes its filter, so it will be offered that one instead. Events are
+         * analysed before they are published, so ANPR filters can be checked here too.
+         */
+        boolean supersededBy(LiveEventDto newer) {
+            return newer != null
+                    && delivery.coalescePerCamera()
+                    && filter.matches(newer);
+        }
+
+        void noteCoalesced(String camera) {
+            coalesced.incrementAndGet();
+            noteSkipped(camera);
+        }
+
+        /**
+         * Records an event this subscriber will not see, for the next summary.
+         */
+        void noteSkipped(String camera) {
+            lock.lock();
+            try {
+                skippedSinceSummary.merge(camera == null ? "unknown" : camera, 1L, Long::sum);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            closed = true;
+            if (subscribers.remove(id, this)) {
+                lastSubscriberLeftNanos = System.nanoTime();
+                subscriberLeft = true;
+            }
+            unregister(this);
+            lock.lock();
+            try {
+                pending.clear();
+            } finally {
+                lock.unlock();
+            }
+            Thread thread = sender;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        SubscriberStats stats() {
+            int depth;
+            long lagMs;
+            lock.lock();
+            try {
+                depth = pending.size();
+                Envelope oldest = pending.isEmpty() ? null : pending.values().iterator().next();
+                lagMs = oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedAtNanos());
+            } finally {
+                lock.unlock();
+            }
+            return new SubscriberStats(id, clientAddr, mode.name().toLowerCase(Locale.ROOT), filter, delivery,
+                    connectedAt, depth, capacity, sent.get(), dropped.get(), coalesced.get(), lagMs);
+        }
+
+        private boolean replay(List<LiveReplayBuffer.Entry> backlog) {
+            for (LiveReplayBuffer.Entry entry : backlog) {
+                if (closed) {
+                    return false;
+                }
+                try {
+                    awaitToken();
+                    emitter.send(frameFor(entry));
+                    sent.incrementAndGet();
+                } catch (InterruptedException e) {
+                    return false;
+                } catch (Exception e) {
+                    close();
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Set<ResponseBodyEmitter.DataWithMediaType> frameFor(LiveReplayBuffer.Entry entry) throws IOException {
+            if (mode == StreamMode.THIN) {
+                return entry.thinFrame();
+            }
+            synchronized (dispatchLock) {
+                if (entry.fullFrame() != null) {
+                    return entry.fullFrame();
+                }
+            }
+            Frame frame = encodeFromCache(entry.summary(), replayBuffer.eventId(entry.sequence()));
+            synchronized (dispatchLock) {
+                return replayBuffer.attachFullFrame(entry, frame.data(), frame.bytes());
+            }
+        }
+
+        private void drain() {
+            long summaryEvery = summaryInterval.toNanos();
+            long nextSummaryAt = System.nanoTime() + summaryEvery;
+            while (!closed) {
+                try {
+                    boolean ready = awaitPending(nextSummaryAt);
+                    if (System.nanoTime() - nextSummaryAt >= 0) {
+                        sendSummary();
+                        nextSummaryAt = System.nanoTime() + summaryEvery;
+                    }
+                    if (!ready) {
+                        continue;
+                    }
+                    // Wait for the rate limit before taking the event, so latest-wins keeps
+                    // replacing it with fresher ones in the meantime.
+                    awaitToken();
+                    Envelope envelope = poll();
+                    if (envelope != null) {
+                        emitter.send(envelope.frame());
+                        sent.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    close();
+                    return;
+                }
+            }
+        }
+
+        private boolean awaitPending(long deadline) throws InterruptedException {
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    changed.awaitNanos(remaining);
+                }
+                return !pending.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Envelope poll() {
+            lock.lock();
+            try {
+                Iterator<Envelope> it = pending.values().iterator();
+                if (!it.hasNext()) {
+                    return null;
+                }
+                Envelope next = it.next();
+                it.remove();
+                return next;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void awaitToken() throws InterruptedException {
+            long waitNanos;
+            while ((waitNanos = limiter.tryAcquire()) > 0) {
+                throttled = true;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } finally {
+                    throttled = false;
+                }
+            }
+        }
+
+        private void sendSummary() throws IOException {
+            Map<String, Long> skipped;
+            lock.lock();
+            try {
+                if (skippedSinceSummary.isEmpty()) {
+                    return;
+                }
+                skipped = new TreeMap<>(skippedSinceSummary);
+                skippedSinceSummary.clear();
+            } finally {
+                lock.unlock();
+            }
+            long total = skipped.values().stream().mapToLong(Long::longValue).sum();
+            byte[] json = objectMapper.writeValueAsBytes(new SkipSummary(total, skipped, summaryInterval.toMillis()));
+            emitter.send(SseEmitter.event().name("summary").data(json, MediaType.APPLICATION_JSON).build());
+        }
+    }
+
+    /**
+     * How events reach one subscriber: per-camera latest-wins and/or a max send rate.
+     * A rate of zero means unlimited.
+     */
+    public record Delivery(boolean coalescePerCamera, double maxEventsPerSecond) {
+    }
+
+    /**
+     * Sent as a "summary" SSE event when events were skipped for this subscriber since the
+     * previous summary, by coalescing, rate limiting or queue overflow.
+     */
+    public record SkipSummary(long skipped, Map<String, Long> skippedByCamera, long intervalMs) {
+    }
+
+    /**
+     * Server-side subscription filter. Null fields match anything; {@code anprStatus} is
+     * "ok", "bad" or "none", and {@code contentType} matches as a case-insensitive prefix.
+     */
+    public record StreamFilter(
+            String remoteAddr,
+            String path,
+            String contentType,
+            String anprStatus,
+            String illegalCode
+    ) {
+        public static final StreamFilter ALL = new StreamFilter(null, null, null, null, null);
+
+        boolean matches(LiveEventDto event) {
+            if (remoteAddr != null && !remoteAddr.equals(event.getRemoteAddr())) {
+                return false;
+            }
+            if (path != null && !path.equals(event.getPath())) {
+                return false;
+            }
+            if (contentType != null && (event.getContentType() == null
+                    || !event.getContentType().regionMatches(true, 0, contentType, 0, contentType.length()))) {
+                return false;
+            }
+            if (anprStatus != null) {
+                String status = event.getAnprStatus() == null ? "none" : event.getAnprStatus();
+                if (!anprStatus.equalsIgnoreCase(status)) {
+                    return false;
+                }
+            }
+            return illegalCode == null
+                    || (event.getIllegalCodes() != null && event.getIllegalCodes().contains(illegalCode));
+        }
+    }
+
+    public enum StreamMode {
+        FULL,
+        THIN
+    }
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        DISCONNECT
+    }
+
+    public record SubscriberStats(
+            String id,
+            String clientAddr,
+            String mode,
+            StreamFilter filter,
+            Delivery delivery,
+            Instant connectedAt,
+            int queueDepth,
+            int capacity,
+            long sent,
+            long dropped,
+            long coalesced,
+            long lagMs
+    ) {
+    }
+
+    public record HubStats(
+            String overflowPolicy,
+            int inboxDepth,
+            int inboxCapacity,
+            long published,
+            long inboxDropped,
+            long dispatched,
+            long backlogCoalesced,
+            int filterGroups,
+            LivePartCache.Stats partCache,
+            LiveReplayBuffer.Stats replay,
+            List<SubscriberStats> subscribers
+    ) {
     }
 }
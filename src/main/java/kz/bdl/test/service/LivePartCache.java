@@ -0,0 +1,160 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.model.PartContent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short-lived LRU of part bytes for thin live-stream viewers. The SSE payload carries only a
+ * URL per part; the bytes stay here until the event expires or is pushed out by newer events,
+ * so a viewer that never opens an event never downloads its images.
+ * <p>
+ * Bounded by event count, total bytes and age. Entries hold references to the original
+ * {@link PartContent} handles and release them on eviction. Parts of captured events point at
+ * files in the capture store, so the store evicts them with {@link #evictFilesUnder} before it
+ * deletes anything.
+ */
+@Service
+public class LivePartCache {
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+
+    @Value("${live.parts.max-events:256}")
+    private int maxEvents;
+
+    @Value("${live.parts.max-bytes:128MB}")
+    private DataSize maxBytes;
+
+    @Value("${live.parts.ttl:2m}")
+    private Duration ttl;
+
+    /**
+     * Stores the parts of an event. Takes ownership of the given references.
+     */
+    public void put(String eventId, List<CachedPart> parts) {
+        long bytes = 0;
+        for (CachedPart part : parts) {
+            bytes += part.content() == null ? 0 : part.content().size();
+        }
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(eventId, new Entry(parts, bytes, System.nanoTime()));
+            totalBytes += bytes;
+            if (previous != null) {
+                totalBytes -= previous.bytes();
+                evicted.add(previous);
+            }
+            evict(evicted);
+        }
+        evicted.forEach(Entry::release);
+    }
+
+    /**
+     * Returns a retained handle to one part, or {@code null} when it has expired or never
+     * existed. The caller must release it.
+     */
+    public CachedPart open(String eventId, int index) {
+        List<Entry> evicted = new ArrayList<>();
+        CachedPart result = null;
+        synchronized (this) {
+            evict(evicted);
+            Entry entry = entries.get(eventId);
+            if (entry != null && index >= 0 && index < entry.parts().size()) {
+                CachedPart part = entry.parts().get(index);
+                if (part.content() != null) {
+                    result = new CachedPart(part.content().retain(), part.contentType(), part.filename());
+                }
+            }
+        }
+        evicted.forEach(Entry::release);
+        return result;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), totalBytes, maxEvents, maxBytes.toBytes(), ttl.toSeconds());
+    }
+
+    public void clear() {
+        List<Entry> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(entries.values());
+            entries.clear();
+            totalBytes = 0;
+        }
+        evicted.forEach(Entry::release);
+    }
+
+    /**
+     * Drops every event with a part stored under {@code dir}. A part already being streamed keeps
+     * reading from its open file.
+     */
+    public void evictFilesUnder(Path dir) {
+        Path root = dir.toAbsolutePath().normalize();
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.hasFileUnder(root)) {
+                    it.remove();
+                    totalBytes -= entry.bytes();
+                    evicted.add(entry);
+                }
+            }
+        }
+        evicted.forEach(Entry::release);
+    }
+
+    // Caller holds the monitor; released outside of it.
+    private void evict(List<Entry> evicted) {
+        long expiredBefore = System.nanoTime() - ttl.toNanos();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            boolean overBudget = entries.size() > Math.max(1, maxEvents) || totalBytes > maxBytes.toBytes();
+            if (!overBudget && entry.storedAtNanos() - expiredBefore > 0) {
+                // Access order is not age order, so keep looking for expired entries.
+                continue;
+            }
+            it.remove();
+            totalBytes -= entry.bytes();
+            evicted.add(entry);
+        }
+    }
+
+    private record Entry(List<CachedPart> parts, long bytes, long storedAtNanos) {
+        boolean hasFileUnder(Path root) {
+            for (CachedPart part : parts) {
+                PartContent content = part.content();
+                if (content != null && content.isFileBacked() && content.file().toAbsolutePath().normalize().startsWith(root)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void release() {
+            for (CachedPart part : parts) {
+                if (part.content() != null) {
+                    part.content().release();
+                }
+            }
+        }
+    }
+
+    public record CachedPart(PartContent content, String contentType, String filename) {
+    }
+
+    public record Stats(int events, long bytes, int maxEvents, long maxBytes, long ttlSeconds) {
+    }
+}
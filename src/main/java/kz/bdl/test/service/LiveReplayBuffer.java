@@ -0,0 +1,189 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.model.LiveEventDto;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bounded ring of recently dispatched live events, kept so a reconnecting {@code EventSource}
+ * can be sent exactly what it missed.
+ * <p>
+ * Event ids are {@code <epoch>-<sequence>}: the epoch changes on every start, so an id from a
+ * previous run is recognised as unknown instead of being compared with the new sequence.
+ * The ring is bounded by entry count, the bytes of the frames it keeps and age; not thread-safe on
+ * its own, the hub guards it with its dispatch lock.
+ */
+public final class LiveReplayBuffer {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final int maxEvents;
+    private final long maxBytes;
+    private final long retentionNanos;
+    private long sequence;
+    private long lastAppended;
+    private long bytes;
+
+    LiveReplayBuffer(int maxEvents, long maxBytes, long retentionNanos) {
+        this.maxEvents = Math.max(0, maxEvents);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.retentionNanos = retentionNanos;
+    }
+
+    boolean enabled() {
+        return maxEvents > 0 && maxBytes > 0;
+    }
+
+    long nextSequence() {
+        return ++sequence;
+    }
+
+    String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    void append(Entry entry) {
+        if (!enabled()) {
+            return;
+        }
+        entries.addLast(entry);
+        lastAppended = entry.sequence();
+        bytes += entry.bytes();
+        trim();
+    }
+
+    /**
+     * Entries after {@code lastEventId}. {@code truncated} is set when the ring no longer reaches
+     * back that far, or the id belongs to another run, so the client knows it has a gap.
+     */
+    Slice since(String lastEventId) {
+        trim();
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return new Slice(List.of(), false);
+        }
+        long after;
+        String id = lastEventId.trim();
+        int dash = id.indexOf('-');
+        try {
+            after = dash > 0 && id.substring(0, dash).equals(epoch) ? Long.parseLong(id.substring(dash + 1)) : -1;
+        } catch (NumberFormatException e) {
+            after = -1;
+        }
+        if (after < 0) {
+            return new Slice(List.copyOf(entries), true);
+        }
+        List<Entry> out = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.sequence() > after) {
+                out.add(entry);
+            }
+        }
+        Entry oldest = entries.peekFirst();
+        // Sequences are handed out before the event is appended, so compare with what is in the ring.
+        boolean truncated = after < lastAppended && (oldest == null || oldest.sequence() > after + 1);
+        return new Slice(out, truncated);
+    }
+
+    Stats stats() {
+        return new Stats(entries.size(), bytes, maxEvents, maxBytes, sequence);
+    }
+
+    private void trim() {
+        long expiredBefore = System.nanoTime() - retentionNanos;
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            boolean overBudget = entries.size() > maxEvents || bytes > maxBytes;
+            if (!overBudget && entry.createdAtNanos() - expiredBefore > 0) {
+                break;
+            }
+            it.remove();
+            entry.retained = false;
+            bytes -= entry.bytes();
+        }
+    }
+
+    /**
+     * Keeps a full frame rebuilt for a replay, so later replays of the entry reuse it. Returns the
+     * frame to send: the one already attached if another replay got there first.
+     */
+    Set<ResponseBodyEmitter.DataWithMediaType> attachFullFrame(Entry entry, Set<ResponseBodyEmitter.DataWithMediaType> frame, long frameBytes) {
+        if (entry.fullFrame != null) {
+            return entry.fullFrame;
+        }
+        if (entry.retained) {
+            entry.fullFrame = frame;
+            entry.fullBytes = frameBytes;
+            bytes += frameBytes;
+            trim();
+        }
+        return frame;
+    }
+
+    /**
+     * One replayable event. {@code summary} is the thin copy of the event (part URLs, no bytes),
+     * used for filter matching; {@code thinFrame} is its encoded frame, sent as is on thin
+     * replays. The full frame is set when a full viewer received the event live, or by
+     * {@link #attachFullFrame} after the first full replay. Both frames count towards the budget.
+     */
+    static final class Entry {
+
+        private final long sequence;
+        private final long createdAtNanos;
+        private final LiveEventDto summary;
+        private final Set<ResponseBodyEmitter.DataWithMediaType> thinFrame;
+        private final long thinBytes;
+        private Set<ResponseBodyEmitter.DataWithMediaType> fullFrame;
+        private long fullBytes;
+        private boolean retained = true;
+
+        Entry(long sequence, long createdAtNanos, LiveEventDto summary,
+              Set<ResponseBodyEmitter.DataWithMediaType> thinFrame, long thinBytes,
+              Set<ResponseBodyEmitter.DataWithMediaType> fullFrame, long fullBytes) {
+            this.sequence = sequence;
+            this.createdAtNanos = createdAtNanos;
+            this.summary = summary;
+            this.thinFrame = thinFrame;
+            this.thinBytes = thinBytes;
+            this.fullFrame = fullFrame;
+            this.fullBytes = fullFrame == null ? 0 : fullBytes;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        long createdAtNanos() {
+            return createdAtNanos;
+        }
+
+        LiveEventDto summary() {
+            return summary;
+        }
+
+        Set<ResponseBodyEmitter.DataWithMediaType> thinFrame() {
+            return thinFrame;
+        }
+
+        // Guarded by the hub's dispatch lock, like the rest of the ring.
+        Set<ResponseBodyEmitter.DataWithMediaType> fullFrame() {
+            return fullFrame;
+        }
+
+        long bytes() {
+            return thinBytes + fullBytes;
+        }
+    }
+
+    record Slice(List<Entry> entries, boolean truncated) {
+    }
+
+    public record Stats(int events, long bytes, int maxEvents, long maxBytes, long lastSequence) {
+    }
+}
@@ -0,0 +1,153 @@
+package kz.bdl.test.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Part;
+import kz.bdl.test.model.PartContent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class PartBufferPool {
+
+    private final Path spoolRoot = Paths.get("ingest-spool");
+    private final ConcurrentLinkedQueue<byte[]> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledCount = new AtomicInteger();
+
+    @Value("${ingest.buffer-size:256KB}")
+    private DataSize bufferSize;
+
+    @Value("${ingest.buffer-pool-size:64}")
+    private int maxPooledBuffers;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(spoolRoot);
+        try (var walk = Files.walk(spoolRoot)) {
+            walk.sorted(Comparator.reverseOrder())
+                    .filter(path -> !path.equals(spoolRoot))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            log.warn("Failed to remove stale spool file {}", path, e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Reads a multipart part exactly once. Parts that fit into a pooled buffer stay on heap,
+     * larger ones are moved to the spool directory with {@link Part#write(String)}, which lets
+     * the container rename its own temp file instead of copying bytes.
+     */
+    public PartContent read(Part part) throws IOException {
+        long size = part.getSize();
+        if (size >= 0 && size <= bufferCapacity()) {
+            try (InputStream in = part.getInputStream()) {
+                return readIntoBuffer(in, (int) size);
+            }
+        }
+        Path spoolFile = newSpoolFile();
+        part.write(spoolFile.toAbsolutePath().toString());
+        return PartContent.ofFile(spoolFile, Files.size(spoolFile), true);
+    }
+
+    /**
+     * Reads a raw request body. The declared length may be unknown (chunked upload), in which
+     * case the body is buffered until it outgrows the pooled buffer and then spilled to disk.
+     */
+    public PartContent read(InputStream in, long declaredLength) throws IOException {
+        int capacity = bufferCapacity();
+        if (declaredLength >= 0 && declaredLength <= capacity) {
+            return readIntoBuffer(in, (int) declaredLength);
+        }
+
+        byte[] buffer = acquire();
+        int filled = in.readNBytes(buffer, 0, capacity);
+        int next = filled < capacity ? -1 : in.read();
+        if (next < 0) {
+            return PartContent.ofBuffer(buffer, filled, this::recycle);
+        }
+
+        Path spoolFile = newSpoolFile();
+        try (OutputStream out = Files.newOutputStream(spoolFile)) {
+            out.write(buffer, 0, filled);
+            out.write(next);
+            in.transferTo(out);
+        } finally {
+            recycle(buffer);
+        }
+        return PartContent.ofFile(spoolFile, Files.size(spoolFile), true);
+    }
+
+    /**
+     * Moves heap-held bytes to a spool file so a queued consumer stops pinning a pooled buffer.
+     * Takes over the caller's reference to {@code content}.
+     */
+    public PartContent spill(PartContent content) throws IOException {
+        if (content.isFileBacked()) {
+            return content;
+        }
+        Path spoolFile = newSpoolFile();
+        try {
+            content.copyTo(spoolFile);
+        } finally {
+            content.release();
+        }
+        return PartContent.ofFile(spoolFile, Files.size(spoolFile), true);
+    }
+
+    public int pooledBuffers() {
+        return pooledCount.get();
+    }
+
+    private PartContent readIntoBuffer(InputStream in, int size) throws IOException {
+        // Small XML/JSON parts get an exact array; pooling only pays off for image-sized parts.
+        byte[] buffer = size < bufferCapacity() / 8 ? new byte[size] : acquire();
+        int read = in.readNBytes(buffer, 0, size);
+        return PartContent.ofBuffer(buffer, read, this::recycle);
+    }
+
+    private byte[] acquire() {
+        byte[] buffer = freeBuffers.poll();
+        if (buffer != null) {
+            pooledCount.decrementAndGet();
+            return buffer;
+        }
+        return new byte[bufferCapacity()];
+    }
+
+    private void recycle(byte[] buffer) {
+        if (buffer.length != bufferCapacity()) {
+            return;
+        }
+        if (pooledCount.incrementAndGet() > maxPooledBuffers) {
+            pooledCount.decrementAndGet();
+            return;
+        }
+        freeBuffers.offer(buffer);
+    }
+
+    private int bufferCapacity() {
+        return (int) Math.min(bufferSize.toBytes(), Integer.MAX_VALUE - 8);
+    }
+
+    private Path newSpoolFile() throws IOException {
+        Files.createDirectories(spoolRoot);
+        return spoolRoot.resolve(UUID.randomUUID() + ".part");
+    }
+}
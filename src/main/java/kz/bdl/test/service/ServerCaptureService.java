@@ -4,14 +4,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.Part;
 import kz.bdl.test.model.LiveEventDto;
+import kz.bdl.test.model.PartContent;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -20,22 +31,28 @@ import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class ServerCaptureService {
 
-    private static final Pattern ILLEGAL_CODE_PATTERN = Pattern.compile("(?i)<\\s*illegalCode\\s*>\\s*([^<\\s]+)\\s*<\\s*/\\s*illegalCode\\s*>");
-    private static final Pattern ILLEGAL_NAME_PATTERN = Pattern.compile("(?i)<\\s*illegalName\\s*>\\s*([^<]+?)\\s*<\\s*/\\s*illegalName\\s*>");
+    private static final long TRANSFER_CHUNK_BYTES = 1L << 20;
+    private static final int EVENT_LOCK_STRIPES = 64;
+    private static final String INDEX_FILE_NAME = "catalog.idx";
 
     private final ObjectMapper objectMapper = new ObjectMapper()
             .registerModule(new JavaTimeModule())
@@ -43,14 +60,68 @@ public class ServerCaptureService {
 
     private final AtomicBoolean enabled = new AtomicBoolean(false);
     private final AtomicBoolean captureViolationsOnly = new AtomicBoolean(false);
-    private final Object ioLock = new Object();
+    // Writers share the storage read lock and serialize only per event directory stripe;
+    // cleanStorage takes the write lock to wipe the whole tree.
+    private final ReentrantReadWriteLock storageLock = new ReentrantReadWriteLock();
+    private final Lock[] eventLocks = createEventLocks();
     private final Path storageRoot = Paths.get("capture-store");
-    private final List<CapturedEventSummary> capturedEvents = new CopyOnWriteArrayList<>();
+    private final CaptureEventCatalog capturedEvents = new CaptureEventCatalog();
+    private final CaptureIndexJournal indexJournal = new CaptureIndexJournal(storageRoot.resolve(INDEX_FILE_NAME));
+    private final AtomicBoolean catalogLoading = new AtomicBoolean(false);
+    private final AtomicLong catalogGeneration = new AtomicLong();
+    private final AtomicInteger rebuildTotal = new AtomicInteger();
+    private final AtomicInteger rebuildScanned = new AtomicInteger();
+    private volatile Thread rebuildThread;
+    private final PartBufferPool partBufferPool;
+    private final LivePartCache partCache;
+
+    @Value("${capture.index.rebuild-concurrency:16}")
+    private int rebuildConcurrency;
+
+    @Value("${capture.writer.queue-capacity:256}")
+    private int writerQueueCapacity;
+
+    @Value("${capture.writer.threads:4}")
+    private int writerThreads;
+
+    @Value("${capture.writer.batch-size:32}")
+    private int writerBatchSize;
+
+    @Value("${capture.writer.backpressure:block}")
+    private String writerBackpressure;
+
+    @Value("${capture.writer.spill-capacity:1024}")
+    private int writerSpillCapacity;
+
+    private CaptureWriterPipeline<CaptureTask> writer;
 
     @PostConstruct
     public void init() throws IOException {
         Files.createDirectories(storageRoot);
-        loadExistingEvents();
+        loadCatalog();
+        writer = new CaptureWriterPipeline<>(
+                "capture-writer",
+                writerQueueCapacity,
+                writerThreads,
+                writerBatchSize,
+                writerSpillCapacity,
+                CaptureWriterPipeline.BackpressurePolicy.valueOf(writerBackpressure.trim().toUpperCase(Locale.ROOT).replace('-', '_')),
+                this::persist,
+                this::discard,
+                this::spillParts
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            writer.shutdown(10_000);
+        }
+        Thread rebuild = rebuildThread;
+        if (rebuild != null) {
+            rebuild.interrupt();
+        }
+        indexJournal.close();
     }
 
     public void setEnabled(boolean value) {
@@ -73,42 +144,28 @@ public class ServerCaptureService {
         return capturedEvents.size();
     }
 
+    public CaptureWriterPipeline.Stats writerStats() {
+        return writer.stats();
+    }
+
     public String storageRootPath() {
         return storageRoot.toAbsolutePath().normalize().toString();
     }
 
     public List<CapturedEventSummary> listEvents() {
-        return capturedEvents.stream()
-                .sorted(Comparator.comparing(CapturedEventSummary::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder())))
-                .toList();
+        return List.copyOf(capturedEvents.newestFirst());
+    }
+
+    public CaptureEventCatalog.Page queryEvents(CaptureEventCatalog.Query query) {
+        return capturedEvents.query(query).withLoading(catalogLoading.get());
+    }
+
+    public CatalogLoadStatus catalogLoadStatus() {
+        return new CatalogLoadStatus(catalogLoading.get(), rebuildScanned.get(), rebuildTotal.get());
     }
 
     public List<IllegalTypeSummary> listUniqueIllegalTypes() {
-        Map<IllegalTypeKey, Long> counters = new LinkedHashMap<>();
-        for (CapturedEventSummary event : capturedEvents) {
-            List<IllegalTypeValue> illegalTypes = event.getIllegalTypes();
-            if (illegalTypes == null || illegalTypes.isEmpty()) {
-                continue;
-            }
-            for (IllegalTypeValue illegalType : illegalTypes) {
-                if (illegalType == null) {
-                    continue;
-                }
-                String code = normalizeIllegalValue(illegalType.illegalCode());
-                String name = normalizeIllegalValue(illegalType.illegalName());
-                if (code == null && name == null) {
-                    continue;
-                }
-                counters.merge(new IllegalTypeKey(code, name), 1L, Long::sum);
-            }
-        }
-        return counters.entrySet().stream()
-                .sorted(Comparator
-                        .comparing(Map.Entry<IllegalTypeKey, Long>::getValue, Comparator.reverseOrder())
-                        .thenComparing(e -> e.getKey().illegalCode(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
-                        .thenComparing(e -> e.getKey().illegalName(), Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
-                .map(e -> new IllegalTypeSummary(e.getKey().illegalCode(), e.getKey().illegalName(), e.getValue()))
-                .toList();
+        return capturedEvents.illegalTypeCounts();
     }
 
     public EventMetadata readMetadata(String eventId) throws IOException {
@@ -133,8 +190,11 @@ public class ServerCaptureService {
     }
 
     public void cleanStorage() throws IOException {
-        synchronized (ioLock) {
+        storageLock.writeLock().lock();
+        try {
             Path normalizedRoot = storageRoot.toAbsolutePath().normalize();
+            // Thin viewers fetch captured parts straight from these files.
+            partCache.evictFilesUnder(normalizedRoot);
             if (Files.exists(normalizedRoot)) {
                 try (var walk = Files.walk(normalizedRoot)) {
                     walk.sorted(Comparator.reverseOrder())
@@ -154,113 +214,350 @@ public class ServerCaptureService {
                 }
             }
             Files.createDirectories(normalizedRoot);
+            catalogGeneration.incrementAndGet();
             capturedEvents.clear();
+            indexJournal.reset();
+        } finally {
+            storageLock.writeLock().unlock();
         }
     }
 
-    public void captureIfEnabled(LiveEventDto event) {
-        if (!enabled.get()) {
+    /**
+     * Opens the event directory before the request parts are read, so each part can be moved
+     * there straight from the servlet {@link Part} instead of being buffered and copied later.
+     * Returns {@code null} when capture is off, or in violations-only mode where most events
+     * are dropped after analysis and writing them up front would only cost extra disk I/O.
+     */
+    public CaptureTarget beginCapture(String eventId) throws IOException {
+        if (!enabled.get() || captureViolationsOnly.get()) {
+            return null;
+        }
+        Lock eventLock = eventLock(eventId);
+        storageLock.readLock().lock();
+        eventLock.lock();
+        try {
+            Path eventDir = resolveSafePath(storageRoot.resolve(safeToken(eventId)));
+            Files.createDirectories(eventDir);
+            return new CaptureTarget(eventId, eventDir);
+        } finally {
+            eventLock.unlock();
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues the event for the writer, with the ANPR verdict it was analysed to.
+     */
+    public void captureIfEnabled(LiveEventDto event, IllegalAnalysis analysis) {
+        if (!enabled.get() && !persistedUpFront(event)) {
             return;
         }
 
+        writer.submit(new CaptureTask(retainParts(event), analysis));
+    }
+
+    private boolean persistedUpFront(LiveEventDto event) {
+        List<LiveEventDto.LivePartDto> liveParts = event.getParts() == null ? List.of() : event.getParts();
+        Path normalizedRoot = storageRoot.toAbsolutePath().normalize();
+        return liveParts.stream().anyMatch(p -> p.getContent() != null && p.getContent().isFileBacked()
+                && p.getContent().file().startsWith(normalizedRoot));
+    }
+
+    private void persist(CaptureTask task) {
+        try {
+            persistNow(task.event(), task.analysis());
+        } finally {
+            releaseParts(task.event());
+        }
+    }
+
+    /**
+     * Called for events the writer drops. Parts already written by {@link CaptureTarget} would
+     * otherwise stay behind as a directory without metadata that the catalog never sees.
+     */
+    private void discard(CaptureTask task) {
+        LiveEventDto event = task.event();
+        boolean orphaned = persistedUpFront(event);
+        releaseParts(event);
+        if (orphaned) {
+            deleteEventDir(event.getId());
+        }
+    }
+
+    private void deleteEventDir(String eventId) {
+        Lock eventLock = eventLock(eventId);
+        storageLock.readLock().lock();
+        eventLock.lock();
+        try {
+            Path eventDir = resolveSafePath(storageRoot.resolve(safeToken(eventId)));
+            if (!Files.exists(eventDir)) {
+                return;
+            }
+            partCache.evictFilesUnder(eventDir);
+            try (var walk = Files.walk(eventDir)) {
+                for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to delete incomplete event directory {}", eventId, e);
+        } finally {
+            eventLock.unlock();
+            storageLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the event's parts and metadata and indexes it. Failures are thrown, so the writer
+     * pipeline counts them as failed tasks.
+     */
+    private void persistNow(LiveEventDto event, IllegalAnalysis illegalAnalysis) {
         List<LiveEventDto.LivePartDto> liveParts = event.getParts() == null ? List.of() : event.getParts();
-        IllegalAnalysis illegalAnalysis = analyzeIllegalFromLiveParts(liveParts);
         String anprStatus = illegalAnalysis.status();
         if (captureViolationsOnly.get() && "ok".equals(anprStatus)) {
             log.debug("Skip normal ANPR event {} because capture mode is violations-only", event.getId());
+            if (persistedUpFront(event)) {
+                // The mode was switched after the parts had already been written.
+                deleteEventDir(event.getId());
+            }
             return;
         }
 
-        synchronized (ioLock) {
-            try {
-                Files.createDirectories(storageRoot);
+        Lock eventLock = eventLock(event.getId());
+        storageLock.readLock().lock();
+        eventLock.lock();
+        try {
+            Files.createDirectories(storageRoot);
 
-                String eventId = safeToken(event.getId());
-                Path eventDir = storageRoot.resolve(eventId);
-                Files.createDirectories(eventDir);
+            String eventId = safeToken(event.getId());
+            Path eventDir = storageRoot.resolve(eventId);
+            Files.createDirectories(eventDir);
 
-                List<PartMetadata> parts = new ArrayList<>();
-                for (int i = 0; i < liveParts.size(); i++) {
-                    LiveEventDto.LivePartDto p = liveParts.get(i);
-                    String fileName = buildPartFileName(i, p.getFilename(), p.getContentType());
-                    Path targetPath = resolveSafePath(eventDir.resolve(fileName));
-
-                    byte[] bytes = decodeBase64Safe(p.getBase64());
-                    Files.write(targetPath, bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-
-                    parts.add(new PartMetadata(
-                            p.getName(),
-                            p.getFilename(),
-                            p.getContentType(),
-                            p.getSize(),
-                            p.getTextPreview(),
-                            fileName
-                    ));
+            List<PartMetadata> parts = new ArrayList<>();
+            for (int i = 0; i < liveParts.size(); i++) {
+                LiveEventDto.LivePartDto p = liveParts.get(i);
+                String fileName = buildPartFileName(i, p.getFilename(), p.getContentType());
+                Path targetPath = resolveSafePath(eventDir.resolve(fileName));
+
+                if (!isPersistedAt(p.getContent(), targetPath)) {
+                    writePart(p, targetPath);
                 }
 
-                EventMetadata metadata = new EventMetadata(
-                        event.getId(),
-                        event.getTimestamp(),
-                        event.getMethod(),
-                        event.getPath(),
-                        event.getRemoteAddr(),
-                        event.getContentType(),
-                        event.getHeaders(),
-                        parts
-                );
-
-                Path metadataPath = eventDir.resolve("metadata.json");
-                objectMapper.writerWithDefaultPrettyPrinter().writeValue(metadataPath.toFile(), metadata);
-
-                capturedEvents.removeIf(x -> Objects.equals(x.getId(), event.getId()));
-                capturedEvents.add(new CapturedEventSummary(
-                        event.getId(),
-                        event.getTimestamp(),
-                        event.getRemoteAddr(),
-                        event.getMethod(),
-                        event.getPath(),
-                        event.getContentType(),
-                        parts.size(),
-                        anprStatus,
-                        illegalAnalysis.illegalTypes()
+                parts.add(new PartMetadata(
+                        p.getName(),
+                        p.getFilename(),
+                        p.getContentType(),
+                        p.getSize(),
+                        p.getTextPreview(),
+                        fileName
                 ));
-            } catch (Exception e) {
-                log.error("Failed to persist event {}", event.getId(), e);
             }
+
+            EventMetadata metadata = new EventMetadata(
+                    event.getId(),
+                    event.getTimestamp(),
+                    event.getMethod(),
+                    event.getPath(),
+                    event.getRemoteAddr(),
+                    event.getContentType(),
+                    event.getHeaders(),
+                    parts
+            );
+
+            Path metadataPath = eventDir.resolve("metadata.json");
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(metadataPath.toFile(), metadata);
+
+            CapturedEventSummary summary = new CapturedEventSummary(
+                    event.getId(),
+                    event.getTimestamp(),
+                    event.getRemoteAddr(),
+                    event.getMethod(),
+                    event.getPath(),
+                    event.getContentType(),
+                    parts.size(),
+                    anprStatus,
+                    illegalAnalysis.illegalTypes(),
+                    illegalAnalysis.licensePlate()
+            );
+            capturedEvents.put(summary);
+            indexJournal.append(summary);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist event " + event.getId(), e);
+        } finally {
+            eventLock.unlock();
+            storageLock.readLock().unlock();
         }
     }
 
-    private void loadExistingEvents() throws IOException {
-        capturedEvents.clear();
-        if (!Files.exists(storageRoot)) {
-            return;
+    private Lock eventLock(String eventId) {
+        int hash = eventId == null ? 0 : eventId.hashCode();
+        return eventLocks[(hash ^ (hash >>> 16)) & (EVENT_LOCK_STRIPES - 1)];
+    }
+
+    private static Lock[] createEventLocks() {
+        Lock[] locks = new Lock[EVENT_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /**
+     * Copies the event with its own reference to every part, so the request thread can release
+     * its handles while the event waits in the writer queue.
+     */
+    private static LiveEventDto retainParts(LiveEventDto event) {
+        List<LiveEventDto.LivePartDto> parts = event.getParts() == null ? List.of() : event.getParts();
+        List<LiveEventDto.LivePartDto> retained = new ArrayList<>(parts.size());
+        for (LiveEventDto.LivePartDto part : parts) {
+            retained.add(copyPart(part, part.getContent() == null ? null : part.getContent().retain()));
         }
+        return copyEvent(event, retained);
+    }
 
-        try (var dirs = Files.list(storageRoot)) {
-            dirs.filter(Files::isDirectory).forEach(eventDir -> {
-                Path metadataPath = eventDir.resolve("metadata.json");
-                if (!Files.exists(metadataPath)) {
-                    return;
-                }
+    private CaptureTask spillParts(CaptureTask task) {
+        LiveEventDto event = task.event();
+        List<LiveEventDto.LivePartDto> spilled = new ArrayList<>(event.getParts().size());
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            PartContent content = part.getContent();
+            if (content != null) {
                 try {
-                    EventMetadata metadata = objectMapper.readValue(metadataPath.toFile(), EventMetadata.class);
-                    int partsCount = metadata.parts() == null ? 0 : metadata.parts().size();
-                    IllegalAnalysis illegalAnalysis = analyzeIllegalFromMetadata(metadata.parts(), eventDir);
-                    capturedEvents.add(new CapturedEventSummary(
-                            metadata.id(),
-                            metadata.timestamp(),
-                            metadata.remoteAddr(),
-                            metadata.method(),
-                            metadata.path(),
-                            metadata.contentType(),
-                            partsCount,
-                            illegalAnalysis.status(),
-                            illegalAnalysis.illegalTypes()
-                    ));
+                    content = partBufferPool.spill(content);
                 } catch (IOException e) {
-                    log.warn("Skip invalid metadata file {}", metadataPath, e);
+                    log.warn("Failed to spill part of event {}, keeping it on heap", event.getId(), e);
                 }
-            });
+            }
+            spilled.add(copyPart(part, content));
+        }
+        return new CaptureTask(copyEvent(event, spilled), task.analysis());
+    }
+
+    private static void releaseParts(LiveEventDto event) {
+        if (event.getParts() == null) {
+            return;
+        }
+        for (LiveEventDto.LivePartDto part : event.getParts()) {
+            if (part.getContent() != null) {
+                part.getContent().release();
+            }
+        }
+    }
+
+    private static LiveEventDto.LivePartDto copyPart(LiveEventDto.LivePartDto part, PartContent content) {
+        return part.toBuilder()
+                .base64(content == null ? part.getBase64() : null)
+                .content(content)
+                .build();
+    }
+
+    private static LiveEventDto copyEvent(LiveEventDto event, List<LiveEventDto.LivePartDto> parts) {
+        return event.toBuilder().parts(parts).build();
+    }
+
+    /**
+     * Rebuilds the catalog from the index journal. When the journal is missing or corrupt the
+     * event directories are scanned in the background instead, so the HTTP endpoints come up
+     * immediately and serve a partial catalog flagged as loading until the scan completes.
+     */
+    private void loadCatalog() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        int replayed = indexJournal.replay(capturedEvents::put);
+        if (replayed >= 0) {
+            log.info("Loaded {} captured events from {} in {} ms",
+                    capturedEvents.size(), INDEX_FILE_NAME, System.currentTimeMillis() - startedAt);
+            if (replayed > capturedEvents.size() * 2L + 1024) {
+                indexJournal.rewrite(capturedEvents::newestFirst);
+            }
+            return;
+        }
+
+        log.info("Capture index {} is missing or corrupt, scanning event directories", INDEX_FILE_NAME);
+        capturedEvents.clear();
+        indexJournal.beginRebuild();
+        catalogLoading.set(true);
+        long generation = catalogGeneration.get();
+        rebuildThread = Thread.ofPlatform()
+                .name("capture-index-rebuild")
+                .daemon(true)
+                .start(() -> rebuildFromDirectories(generation, startedAt));
+    }
+
+    private void rebuildFromDirectories(long generation, long startedAt) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Path> eventDirs;
+            try (var dirs = Files.list(storageRoot)) {
+                eventDirs = dirs.filter(Files::isDirectory).toList();
+            }
+            rebuildTotal.set(eventDirs.size());
+
+            // Virtual threads make the fan-out cheap; the semaphore keeps the number of
+            // directories being read at once within what the disk can usefully serve.
+            Semaphore ioPermits = new Semaphore(Math.max(1, rebuildConcurrency));
+            for (Path eventDir : eventDirs) {
+                if (catalogGeneration.get() != generation) {
+                    break;
+                }
+                ioPermits.acquire();
+                executor.submit(() -> {
+                    try {
+                        CapturedEventSummary summary = loadEventDirectory(eventDir);
+                        if (summary != null && catalogGeneration.get() == generation) {
+                            capturedEvents.put(summary);
+                        }
+                    } finally {
+                        rebuildScanned.incrementAndGet();
+                        ioPermits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Capture index rebuild interrupted after {} directories", rebuildScanned.get());
+            catalogLoading.set(false);
+            return;
+        } catch (Exception e) {
+            log.error("Capture index rebuild failed after {} directories", rebuildScanned.get(), e);
+            catalogLoading.set(false);
+            return;
+        }
+
+        try {
+            if (catalogGeneration.get() == generation) {
+                indexJournal.rewrite(capturedEvents::newestFirst);
+            }
+            log.info("Rebuilt capture index with {} events in {} ms",
+                    capturedEvents.size(), System.currentTimeMillis() - startedAt);
+        } catch (IOException e) {
+            log.error("Failed to write rebuilt capture index", e);
+        } finally {
+            catalogLoading.set(false);
+        }
+    }
+
+    private CapturedEventSummary loadEventDirectory(Path eventDir) {
+        Path metadataPath = eventDir.resolve("metadata.json");
+        if (!Files.exists(metadataPath)) {
+            return null;
+        }
+        try {
+            EventMetadata metadata = objectMapper.readValue(metadataPath.toFile(), EventMetadata.class);
+            int partsCount = metadata.parts() == null ? 0 : metadata.parts().size();
+            IllegalAnalysis illegalAnalysis = analyzeIllegalFromMetadata(metadata.parts(), eventDir);
+            return new CapturedEventSummary(
+                    metadata.id(),
+                    metadata.timestamp(),
+                    metadata.remoteAddr(),
+                    metadata.method(),
+                    metadata.path(),
+                    metadata.contentType(),
+                    partsCount,
+                    illegalAnalysis.status(),
+                    illegalAnalysis.illegalTypes(),
+                    illegalAnalysis.licensePlate()
+            );
+        } catch (IOException e) {
+            log.warn("Skip invalid metadata file {}", metadataPath, e);
+            return null;
         }
     }
 
@@ -297,81 +594,89 @@ public class ServerCaptureService {
         }
     }
 
-    private static String extractTextPreview(LiveEventDto.LivePartDto part, byte[] bytes) {
-        if (part.getTextPreview() != null && !part.getTextPreview().isBlank()) {
-            return part.getTextPreview();
+    private static boolean isPersistedAt(PartContent content, Path targetPath) {
+        return content != null && content.isFileBacked() && content.file().equals(targetPath);
+    }
+
+    private static void writePart(LiveEventDto.LivePartDto part, Path targetPath) throws IOException {
+        PartContent content = part.getContent();
+        if (content != null) {
+            content.copyTo(targetPath);
+            return;
         }
+        byte[] bytes = decodeBase64Safe(part.getBase64());
+        Files.write(targetPath, bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Bytes of a text-like part for ANPR scanning, read from the part handle without building
+     * a String. Returns {@code null} for binary parts such as JPEG snapshots.
+     */
+    private static ByteBuffer anprBytes(LiveEventDto.LivePartDto part) {
+        boolean hasPreview = part.getTextPreview() != null && !part.getTextPreview().isBlank();
         String contentType = part.getContentType() == null ? "" : part.getContentType().toLowerCase();
         String filename = part.getFilename() == null ? "" : part.getFilename().toLowerCase();
         boolean looksLikeText = contentType.contains("xml") || contentType.contains("json") || contentType.contains("text")
                 || filename.endsWith(".xml") || filename.endsWith(".json") || filename.endsWith(".txt") || filename.endsWith(".csv");
-        return looksLikeText ? new String(bytes, StandardCharsets.UTF_8) : null;
+        if (!hasPreview && !looksLikeText) {
+            return null;
+        }
+        if (part.getContent() != null) {
+            try {
+                return part.getContent().asReadOnlyBuffer();
+            } catch (IOException e) {
+                log.warn("Cannot read part {} for ANPR scan: {}", part.getFilename(), e.toString());
+                return null;
+            }
+        }
+        if (hasPreview) {
+            return ByteBuffer.wrap(part.getTextPreview().getBytes(StandardCharsets.UTF_8));
+        }
+        return ByteBuffer.wrap(decodeBase64Safe(part.getBase64()));
     }
 
-    private IllegalAnalysis analyzeIllegalFromLiveParts(List<LiveEventDto.LivePartDto> liveParts) {
-        if (liveParts == null || liveParts.isEmpty()) {
-            return new IllegalAnalysis(null, List.of());
+    static IllegalAnalysis analyzeIllegalFromLiveParts(List<LiveEventDto.LivePartDto> liveParts) {
+        AnalysisBuilder analysis = new AnalysisBuilder();
+        if (liveParts == null) {
+            return analysis.build();
         }
-        boolean hasIllegalBlocks = false;
-        boolean hasOk = false;
-        LinkedHashSet<IllegalTypeValue> illegalTypes = new LinkedHashSet<>();
-        for (int i = 0; i < liveParts.size(); i++) {
-            LiveEventDto.LivePartDto part = liveParts.get(i);
-            byte[] bytes = decodeBase64Safe(part.getBase64());
-            String xmlText = extractTextPreview(part, bytes);
-            IllegalTextInfo partInfo = extractIllegalTextInfo(xmlText);
-            if (!partInfo.hasIllegalBlocks()) {
-                continue;
-            }
-            hasIllegalBlocks = true;
-            if ("ok".equals(partInfo.status())) {
-                hasOk = true;
+        for (LiveEventDto.LivePartDto part : liveParts) {
+            ByteBuffer bytes = anprBytes(part);
+            if (bytes != null) {
+                analysis.add(AnprXmlScanner.scan(bytes));
             }
-            illegalTypes.addAll(partInfo.illegalTypes());
         }
-        String status = hasIllegalBlocks ? (hasOk ? "ok" : "bad") : null;
-        return new IllegalAnalysis(status, List.copyOf(illegalTypes));
+        return analysis.build();
     }
 
     private IllegalAnalysis analyzeIllegalFromMetadata(List<PartMetadata> parts, Path eventDir) {
-        if (parts == null || parts.isEmpty()) {
-            return new IllegalAnalysis(null, List.of());
+        AnalysisBuilder analysis = new AnalysisBuilder();
+        if (parts == null) {
+            return analysis.build();
         }
-        boolean hasIllegalBlocks = false;
-        boolean hasOk = false;
-        LinkedHashSet<IllegalTypeValue> illegalTypes = new LinkedHashSet<>();
         for (PartMetadata part : parts) {
-            String xmlText = part.textPreview();
-            if ((xmlText == null || xmlText.isBlank()) && part.savedFile() != null) {
+            ByteBuffer bytes = null;
+            if (part.textPreview() != null && !part.textPreview().isBlank()) {
+                bytes = ByteBuffer.wrap(part.textPreview().getBytes(StandardCharsets.UTF_8));
+            } else if (part.savedFile() != null) {
                 try {
-                    Path filePath = resolveSafePath(eventDir.resolve(part.savedFile()));
-                    xmlText = Files.readString(filePath, StandardCharsets.UTF_8);
-                } catch (Exception ignored) {
-                    xmlText = null;
+                    bytes = PartContent.readOnlyBuffer(resolveSafePath(eventDir.resolve(part.savedFile())));
+                } catch (Exception e) {
+                    log.warn("Cannot read {} in {} for ANPR scan: {}", part.savedFile(), eventDir, e.toString());
                 }
             }
-            IllegalTextInfo partInfo = extractIllegalTextInfo(xmlText);
-            if (!partInfo.hasIllegalBlocks()) {
-                continue;
-            }
-            hasIllegalBlocks = true;
-            if ("ok".equals(partInfo.status())) {
-                hasOk = true;
+            if (bytes != null) {
+                analysis.add(AnprXmlScanner.scan(bytes));
             }
-            illegalTypes.addAll(partInfo.illegalTypes());
         }
-        String status = hasIllegalBlocks ? (hasOk ? "ok" : "bad") : null;
-        return new IllegalAnalysis(status, List.copyOf(illegalTypes));
+        return analysis.build();
     }
 
-    private static IllegalTextInfo extractIllegalTextInfo(String xmlText) {
-        if (xmlText == null || xmlText.isBlank()) {
-            return new IllegalTextInfo(false, null, List.of());
-        }
-        List<String> codeValues = matchGroups(ILLEGAL_CODE_PATTERN, xmlText).stream()
+    private static IllegalTextInfo illegalTextInfo(AnprXmlScanner.Result scan) {
+        List<String> codeValues = scan.illegalCodes().stream()
                 .map(ServerCaptureService::normalizeIllegalValue)
                 .toList();
-        List<String> nameValues = matchGroups(ILLEGAL_NAME_PATTERN, xmlText).stream()
+        List<String> nameValues = scan.illegalNames().stream()
                 .map(ServerCaptureService::normalizeIllegalValue)
                 .toList();
 
@@ -419,7 +724,7 @@ public class ServerCaptureService {
         return new IllegalTextInfo(true, ok ? "ok" : "bad", List.copyOf(illegalTypes));
     }
 
-    private static String normalizeIllegalValue(String value) {
+    static String normalizeIllegalValue(String value) {
         if (value == null) {
             return null;
         }
@@ -427,15 +732,6 @@ public class ServerCaptureService {
         return trimmed.isEmpty() ? null : trimmed;
     }
 
-    private static List<String> matchGroups(Pattern pattern, String text) {
-        List<String> values = new ArrayList<>();
-        Matcher m = pattern.matcher(text);
-        while (m.find()) {
-            values.add(m.group(1));
-        }
-        return values;
-    }
-
     private static String safeToken(String raw) {
         if (raw == null || raw.isBlank()) {
             return "file";
@@ -461,6 +757,61 @@ public class ServerCaptureService {
         return normalizedPath;
     }
 
+    public class CaptureTarget {
+        private final String eventId;
+        private final Path eventDir;
+
+        private CaptureTarget(String eventId, Path eventDir) {
+            this.eventId = eventId;
+            this.eventDir = eventDir;
+        }
+
+        /**
+         * Deletes everything written so far. Called when the request fails before the event is
+         * handed to the writer.
+         */
+        public void abort() {
+            deleteEventDir(eventId);
+        }
+
+        /**
+         * Moves a multipart part into the event directory. Tomcat keeps large parts in a temp
+         * file, so {@link Part#write(String)} usually turns into a rename rather than a copy.
+         */
+        public PartContent persist(int index, Part part) throws IOException {
+            Path targetPath = resolveSafePath(eventDir.resolve(
+                    buildPartFileName(index, part.getSubmittedFileName(), part.getContentType())));
+            storageLock.readLock().lock();
+            try {
+                Files.createDirectories(eventDir);
+                part.write(targetPath.toString());
+                return PartContent.ofFile(targetPath, Files.size(targetPath), false);
+            } finally {
+                storageLock.readLock().unlock();
+            }
+        }
+
+        public PartContent persist(int index, InputStream body, String contentType) throws IOException {
+            Path targetPath = resolveSafePath(eventDir.resolve(buildPartFileName(index, null, contentType)));
+            storageLock.readLock().lock();
+            try {
+                Files.createDirectories(eventDir);
+                try (ReadableByteChannel source = Channels.newChannel(body);
+                     FileChannel target = FileChannel.open(targetPath,
+                             StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = 0;
+                    long transferred;
+                    while ((transferred = target.transferFrom(source, position, TRANSFER_CHUNK_BYTES)) > 0) {
+                        position += transferred;
+                    }
+                }
+                return PartContent.ofFile(targetPath, Files.size(targetPath), false);
+            } finally {
+                storageLock.readLock().unlock();
+            }
+        }
+    }
+
     @Getter
     public static class CapturedEventSummary {
         private final String id;
@@ -472,6 +823,7 @@ public class ServerCaptureService {
         private final int partsCount;
         private final String anprStatus;
         private final List<IllegalTypeValue> illegalTypes;
+        private final String licensePlate;
 
         public CapturedEventSummary(
                 String id,
@@ -482,7 +834,8 @@ public class ServerCaptureService {
                 String contentType,
                 int partsCount,
                 String anprStatus,
-                List<IllegalTypeValue> illegalTypes
+                List<IllegalTypeValue> illegalTypes,
+                String licensePlate
         ) {
             this.id = id;
             this.timestamp = timestamp;
@@ -493,21 +846,59 @@ public class ServerCaptureService {
             this.partsCount = partsCount;
             this.anprStatus = anprStatus;
             this.illegalTypes = illegalTypes == null ? List.of() : List.copyOf(illegalTypes);
+            this.licensePlate = licensePlate;
         }
     }
 
-    private record IllegalAnalysis(String status, List<IllegalTypeValue> illegalTypes) {
+    private record CaptureTask(LiveEventDto event, IllegalAnalysis analysis) {
     }
 
-    private record IllegalTextInfo(boolean hasIllegalBlocks, String status, List<IllegalTypeValue> illegalTypes) {
+    record IllegalAnalysis(String status, List<IllegalTypeValue> illegalTypes, String licensePlate) {
+        List<String> illegalCodes() {
+            return illegalTypes.stream()
+                    .map(IllegalTypeValue::illegalCode)
+                    .filter(code -> code != null)
+                    .distinct()
+                    .toList();
+        }
     }
 
-    private record IllegalTypeKey(String illegalCode, String illegalName) {
+    private static final class AnalysisBuilder {
+        private boolean hasIllegalBlocks;
+        private boolean hasOk;
+        private final LinkedHashSet<IllegalTypeValue> illegalTypes = new LinkedHashSet<>();
+        private String licensePlate;
+
+        void add(AnprXmlScanner.Result scan) {
+            if (licensePlate == null && !scan.licensePlates().isEmpty()) {
+                licensePlate = scan.licensePlates().get(0);
+            }
+            IllegalTextInfo partInfo = illegalTextInfo(scan);
+            if (!partInfo.hasIllegalBlocks()) {
+                return;
+            }
+            hasIllegalBlocks = true;
+            if ("ok".equals(partInfo.status())) {
+                hasOk = true;
+            }
+            illegalTypes.addAll(partInfo.illegalTypes());
+        }
+
+        IllegalAnalysis build() {
+            String status = hasIllegalBlocks ? (hasOk ? "ok" : "bad") : null;
+            return new IllegalAnalysis(status, List.copyOf(illegalTypes), licensePlate);
+        }
+    }
+
+    private record IllegalTextInfo(boolean hasIllegalBlocks, String status, List<IllegalTypeValue> illegalTypes) {
     }
 
     public record IllegalTypeValue(String illegalCode, String illegalName) {
     }
 
+    public record CatalogLoadStatus(boolean loading, int scannedDirectories, int totalDirectories) {
+    }
+
     public record IllegalTypeSummary(String illegalCode, String illegalName, long eventsCount) {
     }
 
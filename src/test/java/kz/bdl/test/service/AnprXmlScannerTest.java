@@ -0,0 +1,87 @@
+package kz.bdl.test.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnprXmlScannerTest {
+
+    // The expressions ServerCaptureService used before the byte-level scanner.
+    private static final Pattern ILLEGAL_CODE_PATTERN = Pattern.compile("(?i)<\\s*illegalCode\\s*>\\s*([^<\\s]+)\\s*<\\s*/\\s*illegalCode\\s*>");
+    private static final Pattern ILLEGAL_NAME_PATTERN = Pattern.compile("(?i)<\\s*illegalName\\s*>\\s*([^<]+?)\\s*<\\s*/\\s*illegalName\\s*>");
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<EventNotificationAlert><illegalCode>0</illegalCode><illegalName>normal</illegalName></EventNotificationAlert>",
+            "<illegalCode>1208</illegalCode><illegalName>Speeding</illegalName><illegalCode>1625</illegalCode><illegalName>Red light</illegalName>",
+            "< ILLEGALCODE >\n  42 \t</ illegalcode ><IllegalName>  Wrong lane  </IllegalName>",
+            "<illegalCode>12 34</illegalCode><illegalName> </illegalName>",
+            "<illegalCode></illegalCode><illegalName></illegalName>",
+            "<illegalCode type=\"int\">7</illegalCode><illegalName lang=\"en\">x</illegalName>",
+            "<illegalCode><value>7</value></illegalCode><illegalName>a<b/>c</illegalName>",
+            "<illegalName>\u041f\u0440\u0435\u0432\u044b\u0448\u0435\u043d\u0438\u0435 \u0441\u043a\u043e\u0440\u043e\u0441\u0442\u0438</illegalName><illegalCode>\u0663</illegalCode>",
+            "<illegalCode>5</illegalName><illegalCode>6</illegalCode>",
+            "<illegalCode>9",
+            "<<illegalCode>8</illegalCode>",
+            "<illegalCodeX>1</illegalCodeX><illegalCode>2</illegalCodeX>",
+            "no markup at all"
+    })
+    void matchesTheOldRegularExpressions(String xml) {
+        AnprXmlScanner.Result result = scan(xml);
+
+        assertThat(trimmed(result.illegalCodes())).isEqualTo(trimmed(groups(ILLEGAL_CODE_PATTERN, xml)));
+        assertThat(trimmed(result.illegalNames())).isEqualTo(trimmed(groups(ILLEGAL_NAME_PATTERN, xml)));
+    }
+
+    @Test
+    void readsLicensePlate() {
+        AnprXmlScanner.Result result = scan("<ANPR><licensePlate> 123ABC02 </licensePlate><LicensePlate></LicensePlate></ANPR>");
+
+        assertThat(result.licensePlates()).containsExactly("123ABC02");
+    }
+
+    @Test
+    void honoursBufferPositionAndLimit() {
+        byte[] bytes = "xx<illegalCode>3</illegalCode><illegalCode>4</illegalCode>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, "<illegalCode>3</illegalCode>".length());
+
+        assertThat(AnprXmlScanner.scan(buffer).illegalCodes()).containsExactly("3");
+        assertThat(buffer.position()).isEqualTo(2);
+    }
+
+    @Test
+    void readsDirectBuffers() {
+        byte[] bytes = "<illegalName>Speeding</illegalName>".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        assertThat(AnprXmlScanner.scan(direct).illegalNames()).containsExactly("Speeding");
+    }
+
+    private static AnprXmlScanner.Result scan(String xml) {
+        return AnprXmlScanner.scan(ByteBuffer.wrap(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> groups(Pattern pattern, String text) {
+        List<String> values = new ArrayList<>();
+        Matcher m = pattern.matcher(text);
+        while (m.find()) {
+            values.add(m.group(1));
+        }
+        return values;
+    }
+
+    // Both sides go through ServerCaptureService.normalizeIllegalValue, which trims, so only
+    // trimmed values have to agree.
+    private static List<String> trimmed(List<String> values) {
+        return values.stream().map(String::trim).toList();
+    }
+}
@@ -0,0 +1,236 @@
+package kz.bdl.test.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CameraConfigPushServiceDigestTest {
+
+    private static final String RFC_CHALLENGE = "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", "
+            + "algorithm=%s, nonce=\"7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v\", "
+            + "opaque=\"FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS\"";
+    private static final String RFC_CNONCE = "f2/wE4q74E6zIJEtWaHKaf5wv/H5QzzpXusqGemxURZJ";
+    private static final Pattern AUTH_PARAM = Pattern.compile("(\\w+)=(?:\"([^\"]*)\"|([^,\\s]*))");
+
+    private FakeCamera camera;
+    private CameraConfigPushService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        camera = new FakeCamera("admin", "secret");
+        service = new CameraConfigPushService(new CameraHealthRegistry(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        camera.stop();
+    }
+
+    // RFC 7616, section 3.9.1.
+    @Test
+    void md5ResponseMatchesRfc7616Example() throws Exception {
+        CameraConfigPushService.DigestSession session =
+                CameraConfigPushService.DigestSession.fromChallenge(RFC_CHALLENGE.formatted("MD5"));
+
+        String authorization = session.authorization("GET", "/dir/index.html", "Mufasa", "Circle of Life", RFC_CNONCE);
+
+        Map<String, String> params = params(authorization);
+        assertThat(params).containsEntry("response", "8ca523f5e9506fed4657c9700eebdbec")
+                .containsEntry("qop", "auth")
+                .containsEntry("nc", "00000001")
+                .containsEntry("cnonce", RFC_CNONCE)
+                .containsEntry("opaque", "FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS")
+                .containsEntry("uri", "/dir/index.html");
+    }
+
+    @Test
+    void sha256ResponseMatchesRfc7616Example() throws Exception {
+        CameraConfigPushService.DigestSession session =
+                CameraConfigPushService.DigestSession.fromChallenge(RFC_CHALLENGE.formatted("SHA-256"));
+
+        String authorization = session.authorization("GET", "/dir/index.html", "Mufasa", "Circle of Life", RFC_CNONCE);
+
+        assertThat(params(authorization))
+                .containsEntry("response", "753927fa0e85d155564e2e272a28d1802ca10daf4496794697cf8db5856cb6c1")
+                .containsEntry("algorithm", "SHA-256");
+    }
+
+    @Test
+    void reusedSessionIncrementsNonceCount() throws Exception {
+        CameraConfigPushService.DigestSession session =
+                CameraConfigPushService.DigestSession.fromChallenge(RFC_CHALLENGE.formatted("MD5"));
+
+        session.authorization("GET", "/a", "Mufasa", "Circle of Life");
+        String second = session.authorization("GET", "/a", "Mufasa", "Circle of Life");
+
+        assertThat(params(second)).containsEntry("nc", "00000002");
+    }
+
+    @Test
+    void cachedSessionSkipsTheChallengeRoundTrip() {
+        assertThat(probe("secret").statusCode()).isEqualTo(200);
+        assertThat(camera.requests()).containsExactly("none", "nonce-1#00000001");
+
+        camera.clearRequests();
+        assertThat(probe("secret").statusCode()).isEqualTo(200);
+        assertThat(camera.requests()).containsExactly("nonce-1#00000002");
+    }
+
+    @Test
+    void staleNonceRefreshesTheSessionAndRetriesOnce() {
+        assertThat(probe("secret").statusCode()).isEqualTo(200);
+        camera.rotateNonce();
+        camera.clearRequests();
+
+        CameraConfigPushService.ProbeResult result = probe("secret");
+
+        assertThat(result.statusCode()).isEqualTo(200);
+        assertThat(result.authType()).isEqualTo("digest");
+        assertThat(camera.requests()).containsExactly("nonce-1#00000002", "nonce-2#00000001");
+
+        camera.clearRequests();
+        assertThat(probe("secret").statusCode()).isEqualTo(200);
+        assertThat(camera.requests()).containsExactly("nonce-2#00000002");
+    }
+
+    @Test
+    void secondUnauthorizedDropsTheSession() {
+        assertThat(probe("secret").statusCode()).isEqualTo(200);
+        camera.clearRequests();
+
+        // The camera's password changed: the preemptive call and its retry are both refused.
+        camera.changePassword("rotated");
+        assertThat(probe("secret").statusCode()).isEqualTo(401);
+        assertThat(camera.requests()).containsExactly("nonce-1#00000002", "nonce-1#00000001");
+
+        camera.clearRequests();
+        assertThat(probe("secret").statusCode()).isEqualTo(401);
+        assertThat(camera.requests()).first().isEqualTo("none");
+    }
+
+    private CameraConfigPushService.ProbeResult probe(String password) {
+        return service.probe(camera.target(), "/ISAPI/System/deviceInfo", "admin", password, 5_000);
+    }
+
+    private static Map<String, String> params(String header) {
+        Map<String, String> out = new HashMap<>();
+        Matcher m = AUTH_PARAM.matcher(header.substring("Digest ".length()));
+        while (m.find()) {
+            out.put(m.group(1), m.group(2) != null ? m.group(2) : m.group(3));
+        }
+        return out;
+    }
+
+    /**
+     * Minimal ISAPI endpoint with MD5 digest auth. Each request is recorded as
+     * {@code nonce#nc}, or {@code none} when it came without credentials.
+     */
+    private static final class FakeCamera {
+
+        private static final String REALM = "IP Camera";
+
+        private final HttpServer server;
+        private final String username;
+        private final List<String> requests = new CopyOnWriteArrayList<>();
+        private volatile String password;
+        private volatile int nonceGeneration = 1;
+
+        FakeCamera(String username, String password) throws IOException {
+            this.username = username;
+            this.password = password;
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        String target() {
+            return "127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        List<String> requests() {
+            return List.copyOf(requests);
+        }
+
+        void clearRequests() {
+            requests.clear();
+        }
+
+        void rotateNonce() {
+            nonceGeneration++;
+        }
+
+        void changePassword(String password) {
+            this.password = password;
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private String nonce() {
+            return "nonce-" + nonceGeneration;
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                if (authorization == null) {
+                    requests.add("none");
+                    challenge(exchange, false);
+                    return;
+                }
+                Map<String, String> params = params(authorization);
+                requests.add(params.get("nonce") + "#" + params.get("nc"));
+                if (!nonce().equals(params.get("nonce"))) {
+                    challenge(exchange, true);
+                    return;
+                }
+                String ha1 = md5(username + ":" + REALM + ":" + password);
+                String ha2 = md5(exchange.getRequestMethod() + ":" + params.get("uri"));
+                String expected = md5(ha1 + ":" + params.get("nonce") + ":" + params.get("nc") + ":"
+                        + params.get("cnonce") + ":" + params.get("qop") + ":" + ha2);
+                if (!username.equals(params.get("username")) || !expected.equals(params.get("response"))) {
+                    challenge(exchange, false);
+                    return;
+                }
+                byte[] body = "<DeviceInfo/>".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        }
+
+        private void challenge(HttpExchange exchange, boolean stale) throws IOException {
+            exchange.getResponseHeaders().add("WWW-Authenticate", "Digest realm=\"" + REALM + "\", qop=\"auth\", nonce=\""
+                    + nonce() + "\"" + (stale ? ", stale=\"TRUE\"" : ""));
+            exchange.sendResponseHeaders(401, -1);
+        }
+
+        private static String md5(String value) {
+            try {
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                return HexFormat.of().formatHex(md.digest(value.getBytes(StandardCharsets.ISO_8859_1)));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
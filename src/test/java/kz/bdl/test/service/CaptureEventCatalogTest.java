@@ -0,0 +1,158 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.service.ServerCaptureService.CapturedEventSummary;
+import kz.bdl.test.service.ServerCaptureService.IllegalTypeValue;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaptureEventCatalogTest {
+
+    private static final Instant BASE = Instant.parse("2026-03-01T12:00:00Z");
+
+    private final CaptureEventCatalog catalog = new CaptureEventCatalog();
+
+    @Test
+    void pagesNewestFirstUntilTheCursorRunsOut() {
+        for (int i = 0; i < 5; i++) {
+            catalog.put(event("e" + i, i, "10.0.0.1", "ok"));
+        }
+
+        assertThat(ids(allPages(query(null, 2)))).containsExactly("e4", "e3", "e2", "e1", "e0");
+
+        CaptureEventCatalog.Page last = catalog.query(query(null, 5));
+        assertThat(last.items()).hasSize(5);
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void eventsWithTheSameTimestampAreNeitherSkippedNorRepeated() {
+        for (String id : List.of("d", "a", "c", "b")) {
+            catalog.put(event(id, 1, "10.0.0.1", "ok"));
+        }
+        catalog.put(event("newest", 2, "10.0.0.1", "ok"));
+        catalog.put(event("oldest", 0, "10.0.0.1", "ok"));
+
+        assertThat(ids(allPages(query(null, 1)))).containsExactly("newest", "a", "b", "c", "d", "oldest");
+    }
+
+    @Test
+    void cursorIsStableWhenNewerEventsArrive() {
+        for (int i = 0; i < 4; i++) {
+            catalog.put(event("e" + i, i, "10.0.0.1", "ok"));
+        }
+        CaptureEventCatalog.Page first = catalog.query(query(null, 2));
+        catalog.put(event("late", 10, "10.0.0.1", "ok"));
+
+        CaptureEventCatalog.Page second = catalog.query(query(first.nextCursor(), 2));
+
+        assertThat(ids(List.of(second))).containsExactly("e1", "e0");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void timeBoundsAreInclusiveAndCombineWithCursor() {
+        for (int i = 0; i < 6; i++) {
+            catalog.put(event("e" + i, i, "10.0.0.1", "ok"));
+        }
+        CaptureEventCatalog.Query bounded = new CaptureEventCatalog.Query(null, 2, null, null, null,
+                BASE.plusSeconds(1), BASE.plusSeconds(4));
+
+        assertThat(ids(allPages(bounded))).containsExactly("e4", "e3", "e2", "e1");
+    }
+
+    @Test
+    void filtersUseTheirIndexAndStillPage() {
+        for (int i = 0; i < 6; i++) {
+            String code = i % 2 == 0 ? "1208" : "1625";
+            catalog.put(event("e" + i, i, i < 3 ? "10.0.0.1" : "10.0.0.2", "bad",
+                    new IllegalTypeValue(code, "name-" + code)));
+        }
+
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 1, null, "1208", null, null, null))))
+                .containsExactly("e4", "e2", "e0");
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 1, null, "1208", "10.0.0.2", null, null))))
+                .containsExactly("e4");
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 2, "ok", null, null, null, null)))).isEmpty();
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 2, null, "9999", null, null, null)))).isEmpty();
+    }
+
+    @Test
+    void eventsWithoutTimestampComeLastAndPageThrough() {
+        catalog.put(event("timed", 0, "10.0.0.1", "ok"));
+        catalog.put(new CapturedEventSummary("x", null, "10.0.0.1", "POST", "/", null, 0, null, List.of(), null));
+        catalog.put(new CapturedEventSummary("y", null, "10.0.0.1", "POST", "/", null, 0, null, List.of(), null));
+
+        assertThat(ids(allPages(query(null, 1)))).containsExactly("timed", "x", "y");
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 1, "none", null, null, null, null))))
+                .containsExactly("x", "y");
+    }
+
+    @Test
+    void replacingAnEventMovesItBetweenIndexes() {
+        catalog.put(event("a", 0, "10.0.0.1", "bad", new IllegalTypeValue("1208", "Speeding")));
+        catalog.put(event("a", 0, "10.0.0.1", "ok", new IllegalTypeValue("0", "normal")));
+
+        assertThat(catalog.size()).isEqualTo(1);
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 5, "bad", null, null, null, null)))).isEmpty();
+        assertThat(ids(allPages(new CaptureEventCatalog.Query(null, 5, null, "0", null, null, null)))).containsExactly("a");
+        assertThat(catalog.illegalTypeCounts())
+                .extracting(ServerCaptureService.IllegalTypeSummary::illegalCode)
+                .containsExactly("0");
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        catalog.put(event("a", 0, "10.0.0.1", "ok"));
+
+        for (String cursor : List.of("%%%", encode("no-separator"), encode("yesterday|a"))) {
+            assertThatThrownBy(() -> catalog.query(query(cursor, 1)))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Invalid cursor");
+        }
+    }
+
+    private List<CaptureEventCatalog.Page> allPages(CaptureEventCatalog.Query first) {
+        List<CaptureEventCatalog.Page> pages = new ArrayList<>();
+        CaptureEventCatalog.Query next = first;
+        while (true) {
+            CaptureEventCatalog.Page page = catalog.query(next);
+            pages.add(page);
+            if (page.nextCursor() == null) {
+                return pages;
+            }
+            assertThat(pages).hasSizeLessThan(100);
+            next = new CaptureEventCatalog.Query(page.nextCursor(), first.limit(), first.anprStatus(), first.illegalCode(),
+                    first.remoteAddr(), first.from(), first.to());
+        }
+    }
+
+    private static List<String> ids(List<CaptureEventCatalog.Page> pages) {
+        return pages.stream()
+                .flatMap(page -> page.items().stream())
+                .map(CapturedEventSummary::getId)
+                .toList();
+    }
+
+    private static CaptureEventCatalog.Query query(String cursor, int limit) {
+        return new CaptureEventCatalog.Query(cursor, limit, null, null, null, null, null);
+    }
+
+    private static CapturedEventSummary event(String id, int second, String remoteAddr, String status, IllegalTypeValue... types) {
+        return new CapturedEventSummary(id, OffsetDateTime.ofInstant(BASE.plusSeconds(second), ZoneOffset.ofHours(5)),
+                remoteAddr, "POST", "/hikvision/events", "multipart/form-data", 1, status, List.of(types), null);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,193 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.service.ServerCaptureService.CapturedEventSummary;
+import kz.bdl.test.service.ServerCaptureService.IllegalTypeValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureIndexJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private CaptureIndexJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("catalog.idx");
+        journal = new CaptureIndexJournal(file);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void replaysAppendedRecords() throws IOException {
+        CapturedEventSummary first = summary("a", "bad", List.of(new IllegalTypeValue("1208", "Speeding")), "123ABC02");
+        CapturedEventSummary second = new CapturedEventSummary("b", null, null, null, null, null, 0, null, List.of(), null);
+        journal.append(first);
+        journal.append(second);
+        journal.close();
+
+        List<CapturedEventSummary> replayed = new ArrayList<>();
+        assertThat(new CaptureIndexJournal(file).replay(replayed::add)).isEqualTo(2);
+
+        assertThat(replayed).hasSize(2);
+        CapturedEventSummary a = replayed.get(0);
+        assertThat(a.getId()).isEqualTo("a");
+        assertThat(a.getTimestamp()).isEqualTo(first.getTimestamp());
+        assertThat(a.getRemoteAddr()).isEqualTo("10.0.0.5");
+        assertThat(a.getPartsCount()).isEqualTo(3);
+        assertThat(a.getAnprStatus()).isEqualTo("bad");
+        assertThat(a.getIllegalTypes()).containsExactly(new IllegalTypeValue("1208", "Speeding"));
+        assertThat(a.getLicensePlate()).isEqualTo("123ABC02");
+        CapturedEventSummary b = replayed.get(1);
+        assertThat(b.getId()).isEqualTo("b");
+        assertThat(b.getTimestamp()).isNull();
+        assertThat(b.getAnprStatus()).isNull();
+    }
+
+    @Test
+    void missingFileOrWrongMagicIsCorrupt() throws IOException {
+        assertThat(journal.replay(s -> { })).isEqualTo(-1);
+
+        Files.write(file, new byte[]{'C', 'A', 'P', 'I', 'D', 'X', '0', '1'});
+        assertThat(journal.replay(s -> { })).isEqualTo(-1);
+    }
+
+    @Test
+    void shortLastRecordIsTruncated() throws IOException {
+        long afterTwo = appendRecords(2);
+        journal.append(summary("c", "ok", List.of(), null));
+        journal.close();
+        truncate(Files.size(file) - 3);
+
+        assertThat(new CaptureIndexJournal(file).replay(s -> { })).isEqualTo(2);
+        assertThat(Files.size(file)).isEqualTo(afterTwo);
+    }
+
+    @Test
+    void partialRecordHeaderIsTruncated() throws IOException {
+        long afterTwo = appendRecords(2);
+        journal.close();
+        appendRaw(new byte[]{0, 0, 1});
+
+        assertThat(new CaptureIndexJournal(file).replay(s -> { })).isEqualTo(2);
+        assertThat(Files.size(file)).isEqualTo(afterTwo);
+    }
+
+    @Test
+    void checksumFailureOnLastRecordIsTruncated() throws IOException {
+        long afterTwo = appendRecords(2);
+        journal.append(summary("c", "ok", List.of(), null));
+        journal.close();
+        flipByte(Files.size(file) - 1);
+
+        assertThat(new CaptureIndexJournal(file).replay(s -> { })).isEqualTo(2);
+        assertThat(Files.size(file)).isEqualTo(afterTwo);
+    }
+
+    @Test
+    void appendsContinueAfterTruncatedTail() throws IOException {
+        appendRecords(2);
+        journal.close();
+        appendRaw(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5});
+
+        CaptureIndexJournal reopened = new CaptureIndexJournal(file);
+        assertThat(reopened.replay(s -> { })).isEqualTo(2);
+        reopened.append(summary("c", "ok", List.of(), null));
+        reopened.close();
+
+        List<String> ids = new ArrayList<>();
+        assertThat(new CaptureIndexJournal(file).replay(s -> ids.add(s.getId()))).isEqualTo(3);
+        assertThat(ids).containsExactly("e0", "e1", "c");
+    }
+
+    @Test
+    void checksumFailureInTheMiddleIsCorrupt() throws IOException {
+        long afterOne = appendRecords(1);
+        appendRecords(1);
+        journal.close();
+        flipByte(afterOne - 1);
+        long size = Files.size(file);
+
+        assertThat(new CaptureIndexJournal(file).replay(s -> { })).isEqualTo(-1);
+        assertThat(Files.size(file)).isEqualTo(size);
+    }
+
+    @Test
+    void oversizedLengthIsCorrupt() throws IOException {
+        appendRecords(1);
+        journal.close();
+        appendRaw(ByteBuffer.allocate(8).putInt(Integer.MAX_VALUE).putInt(0).array());
+
+        assertThat(new CaptureIndexJournal(file).replay(s -> { })).isEqualTo(-1);
+    }
+
+    @Test
+    void rebuildModeWritesNothingUntilRewrite() throws IOException {
+        journal.beginRebuild();
+        journal.append(summary("a", "ok", List.of(), null));
+        assertThat(Files.exists(file)).isFalse();
+
+        List<CapturedEventSummary> catalog = List.of(summary("old", "ok", List.of(), null), summary("a", "ok", List.of(), null));
+        journal.rewrite(() -> catalog);
+        journal.append(summary("b", "ok", List.of(), null));
+        journal.close();
+
+        List<String> ids = new ArrayList<>();
+        assertThat(new CaptureIndexJournal(file).replay(s -> ids.add(s.getId()))).isEqualTo(3);
+        assertThat(ids).containsExactly("old", "a", "b");
+    }
+
+    // Returns the file size after the appended records.
+    private long appendRecords(int count) throws IOException {
+        int start = journal.recordCount();
+        for (int i = 0; i < count; i++) {
+            journal.append(summary("e" + (start + i), "ok", List.of(new IllegalTypeValue("0", "normal")), null));
+        }
+        return Files.size(file);
+    }
+
+    private void truncate(long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private void appendRaw(byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0xFF)).rewind();
+            channel.write(one, position);
+        }
+    }
+
+    private static CapturedEventSummary summary(String id, String status, List<IllegalTypeValue> types, String plate) {
+        return new CapturedEventSummary(id, OffsetDateTime.of(2026, 3, 1, 12, 30, 15, 123_000_000, ZoneOffset.ofHours(5)),
+                "10.0.0.5", "POST", "/hikvision/events", "multipart/form-data", 3, status, types, plate);
+    }
+}
@@ -0,0 +1,65 @@
+package kz.bdl.test.service;
+
+import kz.bdl.test.service.CaptureWriterPipeline.BackpressurePolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaptureWriterPipelineTest {
+
+    @Test
+    void spilledTasksAreWrittenInSubmissionOrder() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> written = new CopyOnWriteArrayList<>();
+        CaptureWriterPipeline<Integer> pipeline = pipeline(2, 8, task -> {
+            await(gate);
+            written.add(task);
+        });
+
+        for (int i = 0; i < 10; i++) {
+            pipeline.submit(i);
+        }
+        assertThat(pipeline.stats().spilled()).isGreaterThan(0L);
+        gate.countDown();
+        pipeline.shutdown(5_000);
+
+        assertThat(written).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(pipeline.stats().written()).isEqualTo(10L);
+    }
+
+    @Test
+    void writerExceptionsCountAsFailed() {
+        CaptureWriterPipeline<Integer> pipeline = pipeline(4, 0, task -> {
+            if (task == 1) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.shutdown(5_000);
+
+        assertThat(pipeline.stats().failed()).isEqualTo(1L);
+        assertThat(pipeline.stats().written()).isEqualTo(2L);
+    }
+
+    private static CaptureWriterPipeline<Integer> pipeline(int capacity, int spillCapacity, Consumer<Integer> writer) {
+        return new CaptureWriterPipeline<>("test-writer", capacity, 1, 4, spillCapacity, BackpressurePolicy.SPILL,
+                writer, task -> { }, UnaryOperator.identity());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
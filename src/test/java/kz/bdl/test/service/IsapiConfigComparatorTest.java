@@ -0,0 +1,85 @@
+package kz.bdl.test.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IsapiConfigComparatorTest {
+
+    private static final String XML = "application/xml";
+    private static final String JSON = "application/json";
+
+    @Test
+    void xmlNamespacesAndFormattingAreIgnored() {
+        String current = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <HttpHostNotification version="2.0" xmlns="http://www.hikvision.com/ver20/XMLSchema">
+                    <id>1</id>
+                    <url>/hikvision/events</url>
+                    <ipAddress>10.0.0.5</ipAddress>
+                </HttpHostNotification>
+                """;
+        String desired = "<h:HttpHostNotification xmlns:h=\"urn:other\"><h:url>/hikvision/events</h:url>"
+                + "<h:ipAddress> 10.0.0.5 </h:ipAddress></h:HttpHostNotification>";
+
+        assertThat(IsapiConfigComparator.covers(XML, current, desired)).isTrue();
+    }
+
+    @Test
+    void xmlRootNameStillHasToMatch() {
+        String current = "<HttpHostNotification xmlns=\"urn:a\"><id>1</id></HttpHostNotification>";
+        String desired = "<HttpHostNotificationList xmlns=\"urn:a\"><id>1</id></HttpHostNotificationList>";
+
+        assertThat(IsapiConfigComparator.covers(XML, current, desired)).isFalse();
+    }
+
+    @Test
+    void numbersCompareByValueAndBooleansIgnoreCase() {
+        String current = "<Config><port>080</port><threshold>1.50</threshold><enabled>TRUE</enabled></Config>";
+
+        assertThat(IsapiConfigComparator.covers(XML, current,
+                "<Config><port>80</port><threshold>1.5</threshold><enabled>true</enabled></Config>")).isTrue();
+        assertThat(IsapiConfigComparator.covers(XML, current, "<Config><port>81</port></Config>")).isFalse();
+        assertThat(IsapiConfigComparator.covers(XML, current, "<Config><enabled>false</enabled></Config>")).isFalse();
+    }
+
+    @Test
+    void emptyDesiredLeafMatchesMissingOne() {
+        String current = "<Config><url>/a</url></Config>";
+
+        assertThat(IsapiConfigComparator.covers(XML, current, "<Config><url>/a</url><userName/></Config>")).isTrue();
+        assertThat(IsapiConfigComparator.covers(XML, current, "<Config><url>/a</url><userName>admin</userName></Config>")).isFalse();
+        assertThat(IsapiConfigComparator.covers(XML, current, "<Config><url>/a</url><auth><mode/></auth></Config>")).isFalse();
+    }
+
+    @Test
+    void extraCurrentFieldsAreIgnoredButMissingRepeatsAreNot() {
+        String current = "<List><item><id>1</id><name>a</name></item></List>";
+
+        assertThat(IsapiConfigComparator.covers(XML, current, "<List><item><id>1</id></item></List>")).isTrue();
+        assertThat(IsapiConfigComparator.covers(XML, current,
+                "<List><item><id>1</id></item><item><id>2</id></item></List>")).isFalse();
+    }
+
+    @Test
+    void jsonNumbersAndMissingFields() {
+        String current = "{\"MixedTargetDetection\":{\"enabled\":true,\"sensitivity\":50.0,"
+                + "\"rules\":[{\"mode\":\"a\",\"id\":1},{\"mode\":\"b\",\"id\":2}]}}";
+
+        assertThat(IsapiConfigComparator.covers(JSON, current,
+                "{\"MixedTargetDetection\":{\"sensitivity\":50,\"rules\":[{\"id\":2}]}}")).isTrue();
+        assertThat(IsapiConfigComparator.covers(JSON, current,
+                "{\"MixedTargetDetection\":{\"comment\":\"\",\"note\":null}}")).isTrue();
+        assertThat(IsapiConfigComparator.covers(JSON, current,
+                "{\"MixedTargetDetection\":{\"rules\":[{\"id\":3}]}}")).isFalse();
+        assertThat(IsapiConfigComparator.covers(JSON, current,
+                "{\"MixedTargetDetection\":{\"level\":1}}")).isFalse();
+    }
+
+    @Test
+    void unparsableOrEmptyCurrentCountsAsDifferent() {
+        assertThat(IsapiConfigComparator.covers(XML, "<Config><open>", "<Config/>")).isFalse();
+        assertThat(IsapiConfigComparator.covers(XML, " ", "<Config/>")).isFalse();
+        assertThat(IsapiConfigComparator.covers(JSON, "{", "{}")).isFalse();
+    }
+}
@@ -0,0 +1,64 @@
+package kz.bdl.test.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveReplayBufferTest {
+
+    private static final long RETENTION = TimeUnit.MINUTES.toNanos(5);
+
+    @Test
+    void thinFramesCountTowardsTheByteBudget() {
+        LiveReplayBuffer buffer = new LiveReplayBuffer(100, 250, RETENTION);
+
+        for (int i = 0; i < 4; i++) {
+            buffer.append(entry(buffer.nextSequence(), 100));
+        }
+
+        assertThat(buffer.stats().events()).isEqualTo(2);
+        assertThat(buffer.stats().bytes()).isEqualTo(200L);
+        assertThat(buffer.since(buffer.eventId(0)).truncated()).isTrue();
+    }
+
+    @Test
+    void attachedFullFrameIsAccountedAndReused() {
+        LiveReplayBuffer buffer = new LiveReplayBuffer(100, 1_000, RETENTION);
+        LiveReplayBuffer.Entry entry = entry(buffer.nextSequence(), 100);
+        buffer.append(entry);
+        Set<ResponseBodyEmitter.DataWithMediaType> first = frame();
+        Set<ResponseBodyEmitter.DataWithMediaType> second = frame();
+
+        assertThat(buffer.attachFullFrame(entry, first, 300)).isSameAs(first);
+        assertThat(buffer.attachFullFrame(entry, second, 300)).isSameAs(first);
+        assertThat(entry.fullFrame()).isSameAs(first);
+        assertThat(buffer.stats().bytes()).isEqualTo(400L);
+    }
+
+    @Test
+    void fullFrameForAnEvictedEntryIsNotKept() {
+        LiveReplayBuffer buffer = new LiveReplayBuffer(1, 1_000, RETENTION);
+        LiveReplayBuffer.Entry evicted = entry(buffer.nextSequence(), 100);
+        buffer.append(evicted);
+        buffer.append(entry(buffer.nextSequence(), 100));
+
+        buffer.attachFullFrame(evicted, frame(), 300);
+
+        assertThat(evicted.fullFrame()).isNull();
+        assertThat(buffer.stats().bytes()).isEqualTo(100L);
+    }
+
+    private static LiveReplayBuffer.Entry entry(long sequence, long thinBytes) {
+        return new LiveReplayBuffer.Entry(sequence, System.nanoTime(), null, frame(), thinBytes, null, 0);
+    }
+
+    // Distinct instances, so reuse can be checked by identity.
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame() {
+        return new HashSet<>();
+    }
+}